@@ -0,0 +1,5 @@
+-- getID looks up a caregiver's appointment on a date
+CREATE INDEX IX_Appointments_Caregiver_Time ON Appointments (CaregiverName, Time);
+
+-- least_loaded counts each caregiver's appointments in a week; CaregiverName in the key makes it a covering range seek
+CREATE INDEX IX_Appointments_Time ON Appointments (Time, CaregiverName);
@@ -0,0 +1,10 @@
+-- patients waiting for a caregiver and a dose on any date from FromDate to ToDate, first come first served
+CREATE TABLE Waitlist (
+    WaitlistID int IDENTITY(1,1),
+    PatientName varchar(255) REFERENCES Patients(Username),
+    Vaccine varchar(255),
+    FromDate date,
+    ToDate date,
+    CreatedAt datetime,
+    PRIMARY KEY (WaitlistID)
+);
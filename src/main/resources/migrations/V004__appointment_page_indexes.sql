@@ -0,0 +1,7 @@
+-- show_appointments pages through one user's appointments by AppointmentID. Databases that were created from a
+-- create.sql which already had these indexes keep theirs.
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Appointments_Caregiver' AND object_id = OBJECT_ID('Appointments'))
+    CREATE INDEX IX_Appointments_Caregiver ON Appointments (CaregiverName, AppointmentID) INCLUDE (Time, Vaccine, PatientName);
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Appointments_Patient' AND object_id = OBJECT_ID('Appointments'))
+    CREATE INDEX IX_Appointments_Patient ON Appointments (PatientName, AppointmentID) INCLUDE (Time, Vaccine, CaregiverName);
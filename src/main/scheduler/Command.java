@@ -0,0 +1,50 @@
+package scheduler;
+
+/**
+ * One parsed command line: its operation's handler from Scheduler's command table and the line's tokens.
+ */
+public class Command {
+    // READ commands only look at the session and the stores, so consecutive ones may run at the same time;
+    // WRITE commands change the data or who is logged in
+    public enum Kind {
+        READ,
+        WRITE
+    }
+
+    public interface Handler {
+        void run(Session session, String[] tokens);
+    }
+
+    private final String operation;
+    private final String[] tokens;
+    private final Kind kind;
+    private final Handler handler;
+
+    Command(String[] tokens, Kind kind, Handler handler) {
+        this.operation = tokens[0];
+        this.tokens = tokens;
+        this.kind = kind;
+        this.handler = handler;
+    }
+
+    // Getters
+    public String getOperation() {
+        return operation;
+    }
+
+    public String[] getTokens() {
+        return tokens;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isQuit() {
+        return operation.equals("quit");
+    }
+
+    void run(Session session) {
+        handler.run(session, tokens);
+    }
+}
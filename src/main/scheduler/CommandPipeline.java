@@ -0,0 +1,184 @@
+package scheduler;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one session's commands from a stream with up to depth of them in flight, printing their output in input
+ * order, so a terminal that sends many commands at once isn't paced by one database round trip per command.
+ *
+ * The reader parses each line as soon as it arrives. Consecutive READ commands run at the same time. A WRITE
+ * command starts once every earlier command has finished, and later commands wait for it, so each command sees
+ * the session and the data as if the commands ran one after another. Every command prints into its own buffer;
+ * buffers are written out, each after its prompt, as soon as all earlier ones have been.
+ */
+public class CommandPipeline {
+    private final int depth;
+    private final PrintStream out;
+    private final String prompt;
+    private final ExecutorService executor;
+
+    // commands whose output hasn't been printed yet, oldest first; guarded by this
+    private final ArrayDeque<Pending> window = new ArrayDeque<>();
+    private boolean waitingForInput = false;
+    private boolean promptShown = false;
+    private boolean quit = false;
+    private RuntimeException failure = null;
+
+    public CommandPipeline(int depth, PrintStream out, String prompt) {
+        this.depth = depth;
+        this.out = out;
+        this.prompt = prompt;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(depth, r -> {
+            Thread t = new Thread(r, "pipeline-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Returns once the input ended or a quit command ran, with all output printed. A command that failed with
+    // an Error stops the pipeline and the error is rethrown here.
+    public void run(BufferedReader in, Session session) throws IOException {
+        // completes once the last WRITE command has finished
+        CompletableFuture<?> lastWrite = CompletableFuture.completedFuture(null);
+        // READ commands started since then
+        List<CompletableFuture<?>> reads = new ArrayList<>();
+        try {
+            while (true) {
+                synchronized (this) {
+                    waitingForInput = true;
+                    flush();
+                }
+                String line = in.readLine();
+                if (line == null) {
+                    break;
+                }
+                Command command = Scheduler.parse(line);
+                Pending pending = new Pending();
+                synchronized (this) {
+                    pending.prompt = !promptShown;
+                    promptShown = false;
+                    waitingForInput = false;
+                    window.add(pending);
+                }
+
+                CompletableFuture<?> after = lastWrite;
+                if (command.getKind() == Command.Kind.WRITE) {
+                    reads.add(lastWrite);
+                    after = CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0]));
+                    reads.clear();
+                }
+                pending.future = after.thenApplyAsync(v -> execute(session, command, pending.out), executor);
+                pending.future.whenComplete((keepGoing, e) -> {
+                    synchronized (this) {
+                        flush();
+                    }
+                });
+                if (command.getKind() == Command.Kind.WRITE) {
+                    lastWrite = pending.future;
+                } else {
+                    reads.add(pending.future);
+                }
+
+                if (command.isQuit()) {
+                    break;
+                }
+                awaitWindow(depth - 1);
+                synchronized (this) {
+                    if (quit || failure != null) {
+                        break;
+                    }
+                }
+            }
+            awaitWindow(0);
+        } finally {
+            executor.shutdown();
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    // A command that throws, e.g. on a number it can't parse, prints the error and the pipeline goes on with
+    // the next one
+    private static boolean execute(Session session, Command command, PrintStream out) {
+        try {
+            return Scheduler.execute(session, command, out);
+        } catch (RuntimeException e) {
+            out.println("Please try again! " + e);
+            return true;
+        }
+    }
+
+    // Waits until at most size commands are still unprinted
+    private void awaitWindow(int size) {
+        while (true) {
+            CompletableFuture<Boolean> oldest;
+            synchronized (this) {
+                if (window.size() <= size || failure != null) {
+                    return;
+                }
+                oldest = window.peek().future;
+            }
+            oldest.handle((keepGoing, e) -> null).join();
+            synchronized (this) {
+                flush();
+            }
+        }
+    }
+
+    // Prints the finished commands at the head of the window, then the prompt if the reader is waiting for the
+    // next line and nothing is left to print
+    private void flush() {
+        while (!window.isEmpty() && window.peek().future != null && window.peek().future.isDone() && failure == null) {
+            Pending pending = window.poll();
+            if (pending.prompt) {
+                out.print(prompt);
+            }
+            pending.writeTo(out);
+            try {
+                if (!pending.future.join()) {
+                    quit = true;
+                }
+            } catch (CompletionException e) {
+                failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        if (window.isEmpty() && waitingForInput && !promptShown && !quit && failure == null) {
+            out.print(prompt);
+            promptShown = true;
+        }
+        out.flush();
+    }
+
+    private static final class Pending {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final PrintStream out;
+        private volatile CompletableFuture<Boolean> future = null;
+        // whether the prompt before this command still has to be printed
+        private boolean prompt;
+
+        private Pending() {
+            this.out = new PrintStream(buffer, false, Charset.defaultCharset());
+        }
+
+        private void writeTo(PrintStream target) {
+            out.flush();
+            target.write(buffer.toByteArray(), 0, buffer.size());
+        }
+    }
+}
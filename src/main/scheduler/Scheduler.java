@@ -1,49 +1,155 @@
 package scheduler;
 
+import scheduler.assignment.AssignmentStrategies;
+import scheduler.bulk.BulkExporter;
+import scheduler.bulk.BulkImporter;
+import scheduler.bulk.BulkTable;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.UsernameIndex;
+import scheduler.cache.VaccineInventory;
 import scheduler.db.ConnectionManager;
+import scheduler.db.ConnectionPool;
+import scheduler.db.MigrationRunner;
+import scheduler.db.QueryPlans;
+import scheduler.journal.Journal;
+import scheduler.journal.ReservationJournal;
+import scheduler.metrics.LatencyHistogram;
+import scheduler.metrics.Metrics;
+import scheduler.model.Appointment;
+import scheduler.model.AppointmentFilter;
+import scheduler.model.AvailabilitySearch;
 import scheduler.model.Caregiver;
 import scheduler.model.Patient;
 import scheduler.model.Vaccine;
+import scheduler.model.WaitlistEntry;
+import scheduler.server.SchedulerServer;
+import scheduler.store.AppointmentStore;
+import scheduler.store.Stores;
+import scheduler.util.HashingService;
+import scheduler.util.SessionTokenService;
 import scheduler.util.Util;
+import scheduler.waitlist.Waitlist;
 
 import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.PrintStream;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Scheduler {
+    // operation -> how to run it; operations that are not in here print "Invalid operation name!"
+    private static final Map<String, Command.Kind> KINDS = new HashMap<>();
+    private static final Map<String, Command.Handler> HANDLERS = new HashMap<>();
 
-    // objects to keep track of the currently logged-in user
-    // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
-    //       since only one user can be logged-in at a time
-    private static Caregiver currentCaregiver = null;
-    private static Patient currentPatient = null;
+    static {
+        register("create_patient", Command.Kind.WRITE, Scheduler::createPatient);
+        register("create_caregiver", Command.Kind.WRITE, Scheduler::createCaregiver);
+        register("login_patient", Command.Kind.WRITE, Scheduler::loginPatient);
+        register("login_caregiver", Command.Kind.WRITE, Scheduler::loginCaregiver);
+        register("resume", Command.Kind.WRITE, Scheduler::resume);
+        register("search_caregiver_schedule", Command.Kind.READ, Scheduler::searchCaregiverSchedule);
+        register("search_range", Command.Kind.READ, Scheduler::searchRange);
+        register("next_available", Command.Kind.READ, Scheduler::nextAvailable);
+        register("reserve", Command.Kind.WRITE, Scheduler::reserve);
+        register("waitlist", Command.Kind.WRITE, Scheduler::waitlist);
+        register("upload_availability", Command.Kind.WRITE, Scheduler::uploadAvailability);
+        register("cancel", Command.Kind.WRITE, Scheduler::cancel);
+        register("cancel_many", Command.Kind.WRITE, Scheduler::cancelMany);
+        register("add_doses", Command.Kind.WRITE, Scheduler::addDoses);
+        register("show_appointments", Command.Kind.READ, Scheduler::showAppointments);
+        register("logout", Command.Kind.WRITE, Scheduler::logout);
+        register("import", Command.Kind.WRITE, Scheduler::importTable);
+        // writes a file, so it keeps its place among the writes
+        register("export", Command.Kind.WRITE, Scheduler::exportTable);
+        register("stats", Command.Kind.READ, Scheduler::stats);
+        register("explain", Command.Kind.READ, Scheduler::explain);
+        register("quit", Command.Kind.WRITE, (session, tokens) -> session.getOut().println("Bye!"));
+    }
+
+    private static void register(String operation, Command.Kind kind, Command.Handler handler) {
+        KINDS.put(operation, kind);
+        HANDLERS.put(operation, handler);
+    }
 
     public static void main(String[] args) {
-        // printing greetings text
-        System.out.println();
-        System.out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
-        System.out.println("*** Please enter one of the following commands ***");
-        System.out.println("> create_patient <username> <password>");  //TODO: implement create_patient (Part 1)
-        System.out.println("> create_caregiver <username> <password>");
-        System.out.println("> login_patient <username> <password>");  // TODO: implement login_patient (Part 1)
-        System.out.println("> login_caregiver <username> <password>");
-        System.out.println("> search_caregiver_schedule <date>");  // TODO: implement search_caregiver_schedule (Part 2)
-        System.out.println("> reserve <date> <vaccine>");  // TODO: implement reserve (Part 2)
-        System.out.println("> upload_availability <date>");
-        System.out.println("> cancel <appointment_id>");  // TODO: implement cancel (extra credit)
-        System.out.println("> add_doses <vaccine> <number>");
-        System.out.println("> show_appointments");  // TODO: implement show_appointments (Part 2)
-        System.out.println("> logout");  // TODO: implement logout (Part 2)
-        System.out.println("> quit");
-        System.out.println();
+        // open the pooled database connections before the first command needs one
+        if (Stores.isJdbc()) {
+            ConnectionManager.init();
+        }
+        Metrics.registerMBean();
+        migrateSchema();
+        openJournal();
+        loadCaches();
+
+        // --server <port> serves many concurrent sessions over TCP instead of the stdin REPL
+        if (args.length == 2 && args[0].equals("--server")) {
+            try {
+                new SchedulerServer(Integer.parseInt(args[1])).serve();
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid port!");
+            } catch (IOException e) {
+                System.out.println("Server stopped: " + e.getMessage());
+            } finally {
+                shutdown();
+            }
+            return;
+        }
+
+        // --script <file> [--group <n>] runs a command file without prompts, "-" reads the commands from stdin
+        if (args.length >= 2 && args[0].equals("--script")) {
+            int groupSize = 1;
+            if (args.length == 4 && args[2].equals("--group")) {
+                try {
+                    groupSize = Integer.parseInt(args[3]);
+                } catch (NumberFormatException e) {
+                    System.out.println("Please enter a valid group size!");
+                    shutdown();
+                    return;
+                }
+            }
+            try (BufferedReader in = args[1].equals("-") ? new BufferedReader(new InputStreamReader(System.in)) :
+                    new BufferedReader(new FileReader(args[1]))) {
+                new ScriptRunner(groupSize).run(in, System.out);
+            } catch (IOException e) {
+                System.out.println("Could not read script: " + e.getMessage());
+            } catch (SQLException e) {
+                System.out.println("Script failed: " + e.getMessage());
+            } finally {
+                shutdown();
+            }
+            return;
+        }
+
+        // objects to keep track of the currently logged-in user
+        Session session = new Session(System.out);
+        printGreeting(System.out);
 
         // read input from user
         BufferedReader r = new BufferedReader(new InputStreamReader(System.in));
+        // PipelineDepth > 1 keeps that many commands in flight for input that arrives faster than it runs
+        int depth = intEnv("PipelineDepth", 1);
+        if (depth > 1) {
+            try {
+                new CommandPipeline(depth, System.out, "> ").run(r, session);
+            } catch (IOException e) {
+                System.out.println("Please try again!");
+            } finally {
+                shutdown();
+            }
+            return;
+        }
         while (true) {
             System.out.print("> ");
             String response = "";
@@ -52,152 +158,282 @@ public class Scheduler {
             } catch (IOException e) {
                 System.out.println("Please try again!");
             }
-            // split the user input by spaces
-            String[] tokens = response.split(" ");
-            // check if input exists
-            if (tokens.length == 0) {
-                System.out.println("Please try again!");
-                continue;
-            }
-            // determine which operation to perform
-            String operation = tokens[0];
-            if (operation.equals("create_patient")) {
-                createPatient(tokens);
-            } else if (operation.equals("create_caregiver")) {
-                createCaregiver(tokens);
-            } else if (operation.equals("login_patient")) {
-                loginPatient(tokens);
-            } else if (operation.equals("login_caregiver")) {
-                loginCaregiver(tokens);
-            } else if (operation.equals("search_caregiver_schedule")) {
-                searchCaregiverSchedule(tokens);
-            } else if (operation.equals("reserve")) {
-                reserve(tokens);
-            } else if (operation.equals("upload_availability")) {
-                uploadAvailability(tokens);
-            } else if (operation.equals("cancel")) {
-                cancel(tokens);
-            } else if (operation.equals("add_doses")) {
-                addDoses(tokens);
-            } else if (operation.equals("show_appointments")) {
-                showAppointments(tokens);
-            } else if (operation.equals("logout")) {
-                logout(tokens);
-            } else if (operation.equals("quit")) {
-                System.out.println("Bye!");
+            if (response == null || !execute(session, response)) {
+                shutdown();
                 return;
-            } else {
-                System.out.println("Invalid operation name!");
             }
         }
     }
 
-    private static void createPatient(String[] tokens) {
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    // Applies pending schema migrations before anything reads the tables; Migrate=false leaves the schema alone
+    private static void migrateSchema() {
+        String migrate = System.getenv("Migrate");
+        if (!Stores.isJdbc() || (migrate != null && !Boolean.parseBoolean(migrate.trim()))) {
+            return;
+        }
+        try {
+            MigrationRunner.migrate();
+        } catch (SQLException e) {
+            System.out.println("Could not migrate the schema: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // JournalDir turns on the reservation journal; whatever a crash left half done is finished here, before the
+    // caches read the tables
+    private static void openJournal() {
+        String directory = System.getenv("JournalDir");
+        if (directory == null) {
+            return;
+        }
+        if (!Stores.isJdbc()) {
+            // nothing the memory backend holds survives a restart, so there is nothing to recover
+            System.out.println("Ignoring JournalDir, the journal needs the jdbc storage backend");
+            return;
+        }
+        String fsync = System.getenv("JournalFsync");
+        try {
+            ReservationJournal.getInstance().configure(Paths.get(directory.trim()),
+                    intEnv("JournalSegmentRecords", 16384),
+                    fsync == null || Boolean.parseBoolean(fsync.trim()));
+        } catch (IOException | SQLException e) {
+            System.out.println("Could not open the journal: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Loads the in-memory indexes that answer hot read paths without a database round trip
+    private static void loadCaches() {
+        // a failed load leaves the username filters off, every check then asks the store
+        try {
+            UsernameIndex.forPatients().refresh();
+            UsernameIndex.forCaregivers().refresh();
+        } catch (SQLException e) {
+            System.out.println("Could not load usernames, username checks will query the database");
+        }
+
+        AvailabilityIndex availabilityIndex = AvailabilityIndex.getInstance();
+        try {
+            availabilityIndex.refresh();
+        } catch (SQLException e) {
+            System.out.println("Could not load availabilities, they will be loaded on demand");
+        }
+        int refreshMillis = intEnv("AvailabilityRefreshMs", 0);
+        if (refreshMillis > 0) {
+            availabilityIndex.startPeriodicRefresh(refreshMillis);
+        }
+
+        // DoseDurability=write_behind keeps dose changes in memory and flushes them every DoseFlushMs
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        String durability = System.getenv("DoseDurability");
+        if (durability != null && durability.trim().equalsIgnoreCase("write_behind") && !Stores.isJdbc()) {
+            // memory stores update their counters in place, there is nothing to write behind
+            System.out.println("Ignoring DoseDurability, write_behind needs the jdbc storage backend");
+        } else if (durability != null && durability.trim().equalsIgnoreCase("write_behind")) {
+            inventory.configure(VaccineInventory.DurabilityMode.WRITE_BEHIND, intEnv("DoseFlushMs", 200));
+        }
+        try {
+            inventory.reconcile();
+        } catch (SQLException e) {
+            System.out.println("Could not load vaccine doses");
+        }
+
+        // the matcher checks the caches above before it tries to book a waiter
+        try {
+            Waitlist.getInstance().load();
+        } catch (SQLException e) {
+            System.out.println("Could not load the waitlist, will retry: " + e.getMessage());
+        }
+    }
+
+    // Flushes buffered writes and closes the pooled connections
+    private static void shutdown() {
+        Waitlist.getInstance().close();
+        VaccineInventory.getInstance().close();
+        ReservationJournal.getInstance().close();
+        ConnectionManager.shutdown();
+    }
+
+    public static void printGreeting(PrintStream out) {
+        // printing greetings text
+        out.println();
+        out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
+        out.println("*** Please enter one of the following commands ***");
+        out.println("> create_patient <username> <password>");  //TODO: implement create_patient (Part 1)
+        out.println("> create_caregiver <username> <password>");
+        out.println("> login_patient <username> <password> [--token]");  // TODO: implement login_patient (Part 1)
+        out.println("> login_caregiver <username> <password> [--token]");
+        out.println("> resume <token>");
+        out.println("> search_caregiver_schedule <date>");  // TODO: implement search_caregiver_schedule (Part 2)
+        out.println("> search_range <from> <to> [vaccine]");
+        out.println("> next_available <vaccine> [from]");
+        out.println("> reserve <date> <vaccine>");  // TODO: implement reserve (Part 2)
+        out.println("> waitlist <date> <vaccine>");
+        out.println("> waitlist <from> <to> <vaccine>");
+        out.println("> upload_availability <date>");
+        out.println("> upload_availability <start> <end> [weekday-mask]");
+        out.println("> cancel <appointment_id>");
+        out.println("> cancel_many <id,id,...>");
+        out.println("> add_doses <vaccine> <number>");
+        out.println("> show_appointments [--from <date>] [--to <date>] [--limit N] [--after <id>]");
+        out.println("> logout");  // TODO: implement logout (Part 2)
+        out.println("> import <table> <file.csv>");
+        out.println("> export <table> <file.csv>");
+        out.println("> stats");
+        out.println("> explain <command>");
+        out.println("> quit");
+        out.println();
+    }
+
+    // Runs one command line for the given session. Returns false once the session asked to quit.
+    public static boolean execute(Session session, String response) {
+        return execute(session, parse(response), null);
+    }
+
+    // Looks the operation up in the command table
+    public static Command parse(String response) {
+        // split the user input by spaces
+        String[] tokens = response.split(" ");
+        // check if input exists
+        if (tokens.length == 0) {
+            return new Command(new String[]{""}, Command.Kind.READ,
+                    (session, t) -> session.getOut().println("Please try again!"));
+        }
+        // determine which operation to perform
+        Command.Handler handler = HANDLERS.get(tokens[0]);
+        if (handler == null) {
+            return new Command(tokens, Command.Kind.READ,
+                    (session, t) -> session.getOut().println("Invalid operation name!"));
+        }
+        return new Command(tokens, KINDS.get(tokens[0]), handler);
+    }
+
+    // Runs the command with its output going to out instead of the session's own stream, unless out is null
+    public static boolean execute(Session session, Command command, PrintStream out) {
+        long start = System.nanoTime();
+        ConnectionManager.bindLastWrite(session.getLastWriteMillis());
+        session.redirect(out);
+        try {
+            command.run(session);
+        } finally {
+            session.redirect(null);
+            if (command.getKind() == Command.Kind.WRITE) {
+                session.setLastWriteMillis(ConnectionManager.getLastWrite());
+            }
+        }
+        Metrics.getInstance().recordCommand(command.getOperation(), System.nanoTime() - start);
+        return !command.isQuit();
+    }
+
+    private static void createPatient(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
         // TODO: Part 1
         // create_caregiver <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
+            out.println("Failed to create user.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
         // check 2: check if the username has been taken already
-        if (usernameExistsPatient(username)) {
-            System.out.println("Username taken, try again!");
+        if (usernameExistsPatient(username, out)) {
+            out.println("Username taken, try again!");
             return;
         }
         byte[] salt = Util.generateSalt();
-        byte[] hash = Util.generateHash(password, salt);
+        // hash on the bounded hashing pool so sign-up bursts don't occupy every session thread
+        byte[] hash = HashingService.getInstance().hashAsync(password.toCharArray(), salt).join();
         // create the caregiver
         try {
-            currentPatient = new Patient.PatientBuilder(username, salt, hash).build();
+            Patient patient = new Patient.PatientBuilder(username, salt, hash).build();
             // save to caregiver information to our database
-            currentPatient.saveToDB();
-            System.out.println("Created user " + username);
+            patient.saveToDB();
+            session.login(patient);
+            out.println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
+            out.println("Failed to create user.");
             e.printStackTrace();
         }
     }
 
-    private static void createCaregiver(String[] tokens) {
+    private static void createCaregiver(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
         // create_caregiver <username> <password>
         // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
+            out.println("Failed to create user.");
             return;
         }
         String username = tokens[1];
         String password = tokens[2];
         // check 2: check if the username has been taken already
-        if (usernameExistsCaregiver(username)) {
-            System.out.println("Username taken, try again!");
+        if (usernameExistsCaregiver(username, out)) {
+            out.println("Username taken, try again!");
             return;
         }
         byte[] salt = Util.generateSalt();
-        byte[] hash = Util.generateHash(password, salt);
+        // hash on the bounded hashing pool so sign-up bursts don't occupy every session thread
+        byte[] hash = HashingService.getInstance().hashAsync(password.toCharArray(), salt).join();
         // create the caregiver
         try {
-            currentCaregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build();
+            Caregiver caregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build();
             // save to caregiver information to our database
-            currentCaregiver.saveToDB();
-            System.out.println("Created user " + username);
+            caregiver.saveToDB();
+            session.login(caregiver);
+            out.println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
+            out.println("Failed to create user.");
             e.printStackTrace();
         }
     }
 
     //Part 1
-    private static boolean usernameExistsPatient(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectUsername = "Select * FROM Patients WHERE Username = ?";
+    private static boolean usernameExistsPatient(String username, PrintStream out) {
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
-            statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            return resultSet.isBeforeFirst();
+            return UsernameIndex.forPatients().exists(username);
         } catch (SQLException e) {
-            System.out.println("Error occured when checking username");
+            out.println("Error occured when checking username");
             e.printStackTrace();
-        } finally {
-            cm.closeConnection();
         }
         return true;
     }
 
-    private static boolean usernameExistsCaregiver(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String selectUsername = "SELECT * FROM Caregivers WHERE Username = ?";
+    private static boolean usernameExistsCaregiver(String username, PrintStream out) {
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
-            statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
-            return resultSet.isBeforeFirst();
+            return UsernameIndex.forCaregivers().exists(username);
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
+            out.println("Error occurred when checking username");
             e.printStackTrace();
-        } finally {
-            cm.closeConnection();
         }
         return true;
     }
 
-    private static void loginPatient(String[] tokens) {
+    private static void loginPatient(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
         // TODO: Part 1 FINISHED
-        if (currentPatient != null || currentPatient != null) {
-            System.out.println("User already logged in.");
+        if (session.isLoggedIn()) {
+            out.println("User already logged in.");
             return;
         }
-        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
-        if (tokens.length != 3) {
-            System.out.println("Login failed.");
+        // check 2: the length for tokens need to be 3 to include all information (with the operation name),
+        //          or 4 with --token to also get a session token for resume
+        boolean issueToken = tokens.length == 4 && tokens[3].equals("--token");
+        if (tokens.length != 3 && !issueToken) {
+            out.println("Login failed.");
             return;
         }
         String username = tokens[1];
@@ -207,28 +443,34 @@ public class Scheduler {
         try {
             patient = new Patient.PatientGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
             e.printStackTrace();
         }
         // check if the login was successful
         if (patient == null) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
         } else {
-            System.out.println("Logged in as: " + username);
-            currentPatient = patient;
+            out.println("Logged in as: " + username);
+            session.login(patient);
+            if (issueToken) {
+                issueSessionToken(session, SessionTokenService.PATIENT, username);
+            }
         }
     }
 
-    private static void loginCaregiver(String[] tokens) {
+    private static void loginCaregiver(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
         // login_caregiver <username> <password>
         // check 1: if someone's already logged-in, they need to log out first
-        if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in.");
+        if (session.isLoggedIn()) {
+            out.println("User already logged in.");
             return;
         }
-        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
-        if (tokens.length != 3) {
-            System.out.println("Login failed.");
+        // check 2: the length for tokens need to be 3 to include all information (with the operation name),
+        //          or 4 with --token to also get a session token for resume
+        boolean issueToken = tokens.length == 4 && tokens[3].equals("--token");
+        if (tokens.length != 3 && !issueToken) {
+            out.println("Login failed.");
             return;
         }
         String username = tokens[1];
@@ -238,205 +480,404 @@ public class Scheduler {
         try {
             caregiver = new Caregiver.CaregiverGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
             e.printStackTrace();
         }
         // check if the login was successful
         if (caregiver == null) {
-            System.out.println("Login failed.");
+            out.println("Login failed.");
+        } else {
+            out.println("Logged in as: " + username);
+            session.login(caregiver);
+            if (issueToken) {
+                issueSessionToken(session, SessionTokenService.CAREGIVER, username);
+            }
+        }
+    }
+
+    private static void issueSessionToken(Session session, char type, String username) {
+        String token = SessionTokenService.getInstance().issue(type, username);
+        session.setSessionToken(token);
+        session.getOut().println("Session token: " + token);
+    }
+
+    private static void resume(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // resume <token>
+        if (session.isLoggedIn()) {
+            out.println("User already logged in.");
+            return;
+        }
+        if (tokens.length != 2) {
+            out.println("Resume failed.");
+            return;
+        }
+        // the signature proves the password was checked at login, so no database lookup or hashing is needed
+        SessionTokenService.Token token = SessionTokenService.getInstance().verify(tokens[1]);
+        if (token == null) {
+            out.println("Resume failed.");
+            return;
+        }
+        if (token.getType() == SessionTokenService.PATIENT) {
+            session.login(new Patient.PatientBuilder(token.getUsername(), null, null).build());
         } else {
-            System.out.println("Logged in as: " + username);
-            currentCaregiver = caregiver;
+            session.login(new Caregiver.CaregiverBuilder(token.getUsername(), null, null).build());
         }
+        session.setSessionToken(tokens[1]);
+        out.println("Logged in as: " + token.getUsername());
     }
 
     // Part 2
-    private static void searchCaregiverSchedule(String[] tokens) {
-        if (currentPatient == null && currentCaregiver == null) {
-            System.out.println("Please login first!");
+    private static void searchCaregiverSchedule(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        if (!session.isLoggedIn()) {
+            out.println("Please login first!");
             return;
         }
         if (tokens.length != 2) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
         String date = tokens[1];
-        System.out.println(date);
+        out.println(date);
         try {
             Date d = Date.valueOf(date);
-            getSchedule(d);
+            getSchedule(d, out);
         } catch (IllegalArgumentException e){
-            System.out.println("Please try again!");
+            out.println("Please try again!");
         } catch (SQLException e) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
         }
     }
 
-    public static void getSchedule(Date date) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+    public static void getSchedule(Date date, PrintStream out) throws SQLException {
+        // caregivers come from the in-memory availability index, already sorted by username
+        for (String caregiver : AvailabilityIndex.getInstance().getCaregivers(date)) {
+            out.println("Caregiver: " + caregiver);
+        }
 
-        String retrieveAvailableCaregivers = "SELECT DISTINCT A.Username FROM Availabilities AS A WHERE A.time = ? " +
-                "ORDER BY A.Username ASC";
+        // doses come from the in-process vaccine inventory
+        for (Map.Entry<String, Integer> vaccine : VaccineInventory.getInstance().snapshot().entrySet()) {
+            out.println("Vaccine: " + vaccine.getKey() + " Available Doses: " + vaccine.getValue());
+        }
+    }
 
+    private static void searchRange(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // search_range <from> <to> [vaccine]
+        if (!session.isLoggedIn()) {
+            out.println("Please login first!");
+            return;
+        }
+        if (tokens.length != 3 && tokens.length != 4) {
+            out.println("Please try again!");
+            return;
+        }
+        Date from;
+        Date to;
         try {
-            PreparedStatement statement = con.prepareStatement(retrieveAvailableCaregivers);
-            statement.setDate(1, date);
-            ResultSet caregiverResult = statement.executeQuery();
-
-            while (caregiverResult.next()) {
-                    System.out.println("Caregiver: " + caregiverResult.getString("Username"));
+            from = Date.valueOf(tokens[1]);
+            to = Date.valueOf(tokens[2]);
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date range!");
+            return;
+        }
+        if (to.before(from)) {
+            out.println("Please enter a valid date range!");
+            return;
+        }
+        // doses are not per date, so they come from the in-process inventory instead of the query
+        if (tokens.length == 4 && !printDoses(tokens[3], out)) {
+            return;
+        }
+        try {
+            if (AvailabilitySearch.printCaregiverCounts(from, to, out) == 0) {
+                out.println("No Caregiver is available");
             }
-            String retrieveVaccineDoses = "SELECT V.Name, V.Doses FROM Vaccines AS V";
-            PreparedStatement statement2 = con.prepareStatement(retrieveVaccineDoses);
-            ResultSet dosesResult = statement2.executeQuery();
-            while (dosesResult.next()) {
-                System.out.println("Vaccine: " + dosesResult.getString(1) + " Available Doses: " +
-                dosesResult.getInt(2));
+        } catch (SQLException e) {
+            out.println("Please try again!");
+        }
+        if (tokens.length == 3) {
+            for (Map.Entry<String, Integer> vaccine : VaccineInventory.getInstance().snapshot().entrySet()) {
+                out.println("Vaccine: " + vaccine.getKey() + " Available Doses: " + vaccine.getValue());
+            }
+        }
+    }
+
+    private static void nextAvailable(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // next_available <vaccine> [from]
+        if (!session.isLoggedIn()) {
+            out.println("Please login first!");
+            return;
+        }
+        if (tokens.length != 2 && tokens.length != 3) {
+            out.println("Please try again!");
+            return;
+        }
+        Date from;
+        try {
+            from = tokens.length == 3 ? Date.valueOf(tokens[2]) : Date.valueOf(LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        if (!printDoses(tokens[1], out)) {
+            return;
+        }
+        try {
+            if (AvailabilitySearch.printNextAvailable(from, out) == null) {
+                out.println("No Caregiver is available");
             }
         } catch (SQLException e) {
-            System.out.println("Please try again!");
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+            out.println("Please try again!");
         }
     }
 
-    private static void reserve(String[] tokens) {
-        if (currentPatient == null && currentCaregiver == null) {
-            System.out.println("Please login first!");
+    // Prints the vaccine's doses; false (after telling the user) if it is unknown or has none left
+    private static boolean printDoses(String vaccineName, PrintStream out) {
+        int doses = VaccineInventory.getInstance().getDoses(vaccineName);
+        if (doses < 0) {
+            out.println("Unknown vaccine " + vaccineName);
+            return false;
+        }
+        out.println("Vaccine: " + vaccineName + " Available Doses: " + doses);
+        if (doses == 0) {
+            out.println("Not enough available doses!");
+            return false;
+        }
+        return true;
+    }
+
+    private static void reserve(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        if (!session.isLoggedIn()) {
+            out.println("Please login first!");
             return;
         }
 
-        if (currentCaregiver != null && currentPatient == null) {
-            System.out.println("Please login as a patient first!");
+        if (session.getCurrentCaregiver() != null && session.getCurrentPatient() == null) {
+            out.println("Please login as a patient first!");
             return;
         }
 
         if (tokens.length != 3) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
 
-        String name = currentPatient.getUsername();
+        String name = session.getCurrentPatient().getUsername();
         String date = tokens[1];
         String vaccineName = tokens[2];
 
         try {
             Date d = Date.valueOf(date);
-            currentPatient.reserve(name, d, vaccineName);
+            session.getCurrentPatient().reserve(name, d, vaccineName, out);
         } catch (IllegalArgumentException e) {
-            System.out.println("Please try again");
+            out.println("Please try again");
         } catch (SQLException e) {
-            System.out.println("Please try again");
+            out.println("Please try again");
             e.printStackTrace();
         }
     }
 
-    private static void uploadAvailability(String[] tokens) {
-        // upload_availability <date>
-        // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+    private static void waitlist(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // waitlist <date> <vaccine>
+        // waitlist <from> <to> <vaccine>
+        if (session.getCurrentPatient() == null) {
+            out.println("Please login as a patient first!");
             return;
         }
-        // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
-        if (tokens.length != 2) {
-            System.out.println("Please try again!");
+        if (tokens.length != 3 && tokens.length != 4) {
+            out.println("Please try again!");
             return;
         }
-        String date = tokens[1];
+        String vaccineName = tokens[tokens.length - 1];
+        if (VaccineInventory.getInstance().getDoses(vaccineName) < 0) {
+            out.println("Unknown vaccine " + vaccineName);
+            return;
+        }
+        Date from;
+        Date to;
         try {
-            Date d = Date.valueOf(date);
-            currentCaregiver.uploadAvailability(d);
-            System.out.println("Availability uploaded!");
+            from = Date.valueOf(tokens[1]);
+            to = tokens.length == 4 ? Date.valueOf(tokens[2]) : from;
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        try {
+            WaitlistEntry entry = Waitlist.getInstance().join(session.getCurrentPatient().getUsername(),
+                    vaccineName, from, to);
+            out.println("Waitlist ID: " + entry.getWaitlistID() + ", you will be booked as soon as a Caregiver " +
+                    "and a dose are available");
         } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+            out.println(e.getMessage());
         } catch (SQLException e) {
-            System.out.println("Error occurred when uploading availability");
+            out.println("Please try again!");
             e.printStackTrace();
         }
     }
 
-    private static void cancel(String[] tokens) {
-        if (currentPatient == null && currentCaregiver == null) {
-            System.out.println("Please login first!");
+    private static void uploadAvailability(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // upload_availability <date>
+        // upload_availability <start> <end> [weekday-mask]
+        // check 1: check if the current logged-in user is a caregiver
+        if (session.getCurrentCaregiver() == null) {
+            out.println("Please login as a caregiver first!");
+            return;
+        }
+        // check 2: the length for tokens need to be 2 for a single date, 3 or 4 for a range
+        if (tokens.length < 2 || tokens.length > 4) {
+            out.println("Please try again!");
+            return;
+        }
+        if (tokens.length == 2) {
+            String date = tokens[1];
+            try {
+                Date d = Date.valueOf(date);
+                session.getCurrentCaregiver().uploadAvailability(d);
+                out.println("Availability uploaded!");
+            } catch (IllegalArgumentException e) {
+                out.println("Please enter a valid date!");
+            } catch (SQLException e) {
+                out.println("Error occurred when uploading availability");
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        List<Date> dates;
+        try {
+            // the mask has one 0/1 flag per weekday, Monday first, e.g. 1111100 for weekdays only
+            String mask = tokens.length == 4 ? tokens[3] : "1111111";
+            dates = datesInRange(Date.valueOf(tokens[1]).toLocalDate(), Date.valueOf(tokens[2]).toLocalDate(), mask);
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date range!");
             return;
         }
-        int AppointmentID = Integer.parseInt(tokens[1]);
         try {
-            cancelAppointment(AppointmentID);
+            int inserted = session.getCurrentCaregiver().uploadAvailability(dates);
+            out.println("Availability uploaded! Inserted: " + inserted + ", Skipped: " + (dates.size() - inserted));
         } catch (SQLException e) {
-            System.out.println("Please try again");
+            out.println("Error occurred when uploading availability");
             e.printStackTrace();
         }
     }
 
-    private static void cancelAppointment(int ID) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-        String cancelDate = "";
-        String CaregiverName = "";
-        String VaccineName = "";
-
-        String getRemovedDate = "SELECT A.Time,A.CaregiverName,A.Vaccine FROM Appointments AS A WHERE A.AppointmentID = ?";
+    private static List<Date> datesInRange(LocalDate start, LocalDate end, String weekdayMask) {
+        if (end.isBefore(start) || weekdayMask.length() != 7 || !weekdayMask.matches("[01]{7}")) {
+            throw new IllegalArgumentException();
+        }
+        List<Date> dates = new ArrayList<>();
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            if (weekdayMask.charAt(day.getDayOfWeek().getValue() - 1) == '1') {
+                dates.add(Date.valueOf(day));
+            }
+        }
+        return dates;
+    }
 
+    private static void cancel(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // cancel <appointment_id>
+        if (!session.isLoggedIn()) {
+            out.println("Please login first!");
+            return;
+        }
+        if (tokens.length != 2) {
+            out.println("Please try again!");
+            return;
+        }
+        int appointmentID;
         try {
-            PreparedStatement statement = con.prepareStatement(getRemovedDate);
-            statement.setInt(1, ID);
-            ResultSet resultSet = statement.executeQuery();
-
-            while (resultSet.next()) {
-                cancelDate = resultSet.getString("Time");
-                CaregiverName = resultSet.getString("CaregiverName");
-                VaccineName = resultSet.getString("Vaccine");
+            appointmentID = Integer.parseInt(tokens[1]);
+        } catch (NumberFormatException e) {
+            out.println("Please try again!");
+            return;
+        }
+        try {
+            if (cancelAppointments(session, List.of(appointmentID)).isEmpty()) {
+                out.println("Appointment " + appointmentID + " does not exist");
+                return;
             }
+            out.println("Appointment Canceled");
         } catch (SQLException e) {
+            out.println("Please try again!");
             e.printStackTrace();
-            throw new SQLException();
         }
+    }
 
-        String removeAppointment = "DELETE FROM Appointments WHERE Appointments.AppointmentID = ?";
-        try {
-            PreparedStatement statement = con.prepareStatement(removeAppointment);
-            statement.setInt(1, ID);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
+    private static void cancelMany(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // cancel_many <id,id,...>
+        if (!session.isLoggedIn()) {
+            out.println("Please login first!");
+            return;
         }
-
-        String addAvailability = "INSERT INTO Availabilities VALUES (?,?)";
+        if (tokens.length != 2) {
+            out.println("Please try again!");
+            return;
+        }
+        // duplicates would only be skipped by the store, drop them here
+        Set<Integer> appointmentIDs = new LinkedHashSet<>();
         try {
-            PreparedStatement statement = con.prepareStatement(addAvailability);
-            statement.setString(1, cancelDate);
-            statement.setString(2, CaregiverName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
+            for (String id : tokens[1].split(",")) {
+                appointmentIDs.add(Integer.parseInt(id.trim()));
+            }
+        } catch (NumberFormatException e) {
+            out.println("Please try again!");
+            return;
         }
-
-        String addDose = "UPDATE Vaccines SET doses = doses + 1 WHERE Name = ?";
         try {
-            PreparedStatement statement = con.prepareStatement(addDose);
-            statement.setString(1, VaccineName);
-            statement.executeUpdate();
+            List<Appointment> cancelled = cancelAppointments(session, new ArrayList<>(appointmentIDs));
+            for (Appointment appointment : cancelled) {
+                out.println("Appointment " + appointment.getAppointmentID() + " Canceled");
+            }
+            out.println("Canceled " + cancelled.size() + " of " + appointmentIDs.size() + " appointments");
         } catch (SQLException e) {
+            out.println("Please try again!");
             e.printStackTrace();
-            throw new SQLException();
         }
-        System.out.println("Appointment Canceled");
     }
 
-    private static void addDoses(String[] tokens) {
+    // Cancels the logged-in user's appointments among the ids in one transaction, then gives the slots back to the
+    // caches. Ids that don't exist, were cancelled already or belong to somebody else are left out of the result.
+    private static List<Appointment> cancelAppointments(Session session, List<Integer> appointmentIDs)
+            throws SQLException {
+        List<Appointment> cancelled;
+        if (session.getCurrentPatient() != null) {
+            cancelled = Stores.appointments().cancel(AppointmentStore.Role.PATIENT,
+                    session.getCurrentPatient().getUsername(), appointmentIDs);
+        } else {
+            cancelled = Stores.appointments().cancel(AppointmentStore.Role.CAREGIVER,
+                    session.getCurrentCaregiver().getUsername(), appointmentIDs);
+        }
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        for (Appointment appointment : cancelled) {
+            if (!inventory.isWriteBehind()) {
+                inventory.applied(appointment.getVaccineName(), 1);
+            }
+            AvailabilityIndex.getInstance().add(appointment.getTime(), appointment.getCaregiverName());
+            AssignmentStrategies.get().released(appointment.getTime(), appointment.getCaregiverName());
+            Waitlist.getInstance().released(appointment.getTime(), appointment.getVaccineName());
+        }
+        return cancelled;
+    }
+
+    private static void addDoses(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
         // add_doses <vaccine> <number>
         // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+        if (session.getCurrentCaregiver() == null) {
+            out.println("Please login as a caregiver first!");
             return;
         }
         // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
         if (tokens.length != 3) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
         String vaccineName = tokens[1];
@@ -445,7 +886,7 @@ public class Scheduler {
         try {
             vaccine = new Vaccine.VaccineGetter(vaccineName).get();
         } catch (SQLException e) {
-            System.out.println("Error occurred when adding doses");
+            out.println("Error occurred when adding doses");
             e.printStackTrace();
         }
         // check 3: if getter returns null, it means that we need to create the vaccine and insert it into the Vaccines
@@ -455,7 +896,7 @@ public class Scheduler {
                 vaccine = new Vaccine.VaccineBuilder(vaccineName, doses).build();
                 vaccine.saveToDB();
             } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
+                out.println("Error occurred when adding doses");
                 e.printStackTrace();
             }
         } else {
@@ -463,46 +904,255 @@ public class Scheduler {
             try {
                 vaccine.increaseAvailableDoses(doses);
             } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
+                out.println("Error occurred when adding doses");
                 e.printStackTrace();
             }
         }
-        System.out.println("Doses updated!");
+        out.println("Doses updated!");
     }
 
-    private static void showAppointments(String[] tokens) {
-        if ((currentCaregiver == null) && (currentPatient == null)) {
-            System.out.println("Please login first");
+    private static void showAppointments(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // show_appointments [--from <date>] [--to <date>] [--limit N] [--after <id>]
+        if (!session.isLoggedIn()) {
+            out.println("Please login first");
             return;
         }
-        if (currentPatient == null) {
+        AppointmentFilter filter;
+        try {
+            filter = parseAppointmentFilter(tokens);
+        } catch (IllegalArgumentException e) {
+            out.println("Please try again!");
+            return;
+        }
+        if (session.getCurrentPatient() == null) {
             try {
-                currentCaregiver.showAppointments(currentCaregiver.getUsername());
+                Caregiver.showAppointments(session.getCurrentCaregiver().getUsername(), filter, out);
             } catch (SQLException e) {
-                System.out.println("Please try again!");
+                out.println("Please try again!");
             }
         } else {
             try {
-                currentPatient.showAppointments(currentPatient.getUsername());
+                Patient.showAppointments(session.getCurrentPatient().getUsername(), filter, out);
             } catch (SQLException e) {
-                System.out.println("Please try again!");
+                out.println("Please try again!");
+            }
+        }
+    }
+
+    // Throws IllegalArgumentException (or NumberFormatException) for unknown flags, missing values or bad values
+    private static AppointmentFilter parseAppointmentFilter(String[] tokens) {
+        AppointmentFilter.AppointmentFilterBuilder builder = new AppointmentFilter.AppointmentFilterBuilder();
+        if (tokens.length % 2 != 1) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 1; i < tokens.length; i += 2) {
+            String value = tokens[i + 1];
+            switch (tokens[i]) {
+                case "--from":
+                    builder.from(Date.valueOf(value));
+                    break;
+                case "--to":
+                    builder.to(Date.valueOf(value));
+                    break;
+                case "--limit":
+                    builder.limit(Integer.parseInt(value));
+                    break;
+                case "--after":
+                    builder.after(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+        return builder.build();
+    }
+
+    private static void importTable(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // import <caregivers|patients|availabilities|vaccines|appointments> <file.csv>
+        if (session.getCurrentCaregiver() == null) {
+            out.println("Please login as a caregiver first!");
+            return;
+        }
+        if (!Stores.isJdbc()) {
+            out.println("Import and export need the jdbc storage backend");
+            return;
+        }
+        BulkTable table = tokens.length == 3 ? BulkTable.fromName(tokens[1]) : null;
+        if (table == null) {
+            out.println("Please try again!");
+            return;
+        }
+        Path file = resolveBulkFile(session, tokens[2]);
+        if (file == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            BulkImporter importer = new BulkImporter(intEnv("BulkBatchSize", 10_000));
+            long rows = importer.importCsv(table, file);
+            out.printf("Imported %d rows into %s in %.1fs%n", rows, table.getTableName(),
+                    (System.nanoTime() - start) / 1e9);
+        } catch (IOException e) {
+            out.println("Could not read " + tokens[2]);
+        } catch (IllegalArgumentException | SQLException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    // Resolves a file name for import or export against BulkDir (default: the working directory), so neither
+    // command reaches files outside it. Remote sessions only get the commands when ServerBulk=true.
+    private static Path resolveBulkFile(Session session, String name) {
+        PrintStream out = session.getOut();
+        String allowRemote = System.getenv("ServerBulk");
+        if (session.isRemote() && (allowRemote == null || !Boolean.parseBoolean(allowRemote.trim()))) {
+            out.println("Import and export are disabled in server mode");
+            return null;
+        }
+        String directory = System.getenv("BulkDir");
+        Path base = Paths.get(directory == null ? "" : directory.trim()).toAbsolutePath().normalize();
+        Path file;
+        try {
+            file = base.resolve(name).normalize();
+        } catch (InvalidPathException e) {
+            out.println("Please try again!");
+            return null;
+        }
+        if (!file.startsWith(base) || file.equals(base)) {
+            out.println("Files must be inside " + base);
+            return null;
+        }
+        return file;
+    }
+
+    private static void exportTable(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // export <caregivers|patients|availabilities|vaccines|appointments> <file.csv>
+        if (session.getCurrentCaregiver() == null) {
+            out.println("Please login as a caregiver first!");
+            return;
+        }
+        if (!Stores.isJdbc()) {
+            out.println("Import and export need the jdbc storage backend");
+            return;
+        }
+        BulkTable table = tokens.length == 3 ? BulkTable.fromName(tokens[1]) : null;
+        if (table == null) {
+            out.println("Please try again!");
+            return;
+        }
+        Path file = resolveBulkFile(session, tokens[2]);
+        if (file == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            long rows = new BulkExporter().exportCsv(table, file);
+            out.printf("Exported %d rows from %s in %.1fs%n", rows, table.getTableName(),
+                    (System.nanoTime() - start) / 1e9);
+        } catch (IOException e) {
+            out.println("Could not write " + tokens[2]);
+        } catch (SQLException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    private static void stats(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // over --server only caregivers see the stats, and never the slow queries' bound usernames
+        if (session.isRemote() && session.getCurrentCaregiver() == null) {
+            out.println("Please login as a caregiver first!");
+            return;
+        }
+        Metrics.getInstance().report(out, !session.isRemote());
+        out.println("Storage backend: " + Stores.getBackend().name().toLowerCase());
+        if (Stores.isJdbc()) {
+            ConnectionPool pool = ConnectionManager.getPool();
+            out.println("Connection pool: total=" + pool.getTotalConnections() + " active=" +
+                    pool.getActiveConnections() + " idle=" + pool.getIdleConnections() +
+                    " statementCacheSize=" + pool.getStatementCacheSize());
+            try {
+                out.println("Schema version: " + MigrationRunner.getCurrentVersion() + " of " +
+                        MigrationRunner.getLatestVersion());
+            } catch (SQLException e) {
+                out.println("Schema version: unknown");
+            }
+            ConnectionPool readPool = ConnectionManager.getReadPool();
+            if (readPool != null) {
+                out.println("Read replica: healthy=" + ConnectionManager.isReplicaHealthy() + " total=" +
+                        readPool.getTotalConnections() + " active=" + readPool.getActiveConnections() +
+                        " reads=" + ConnectionManager.getReplicaReads() + " sticky=" +
+                        ConnectionManager.getStickyReads() + " fallback=" + ConnectionManager.getFallbackReads());
             }
         }
+        out.println("Assignment strategy: " + AssignmentStrategies.get().getName());
+        printUsernameIndex("patients", UsernameIndex.forPatients(), out);
+        printUsernameIndex("caregivers", UsernameIndex.forCaregivers(), out);
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        out.println("Availability index: dates=" + index.getDateCount() + " hits=" + index.getHits() +
+                " misses=" + index.getMisses());
+        Waitlist waitlist = Waitlist.getInstance();
+        LatencyHistogram timeToBook = waitlist.getTimeToBook();
+        out.printf("Waitlist: waiting=%d queues=%d joined=%d booked=%d expired=%d failures=%d " +
+                        "timeToBook p50=%.1fs p99=%.1fs max=%.1fs%n", waitlist.getDepth(), waitlist.getQueueCount(),
+                waitlist.getJoined(), waitlist.getBooked(), waitlist.getExpired(), waitlist.getFailures(),
+                timeToBook.percentile(0.5) / 1e9, timeToBook.percentile(0.99) / 1e9, timeToBook.getMax() / 1e9);
+        Journal journal = ReservationJournal.getInstance().getJournal();
+        if (journal != null) {
+            out.println("Journal: nextSeq=" + journal.getNextSeq() + " segments=" + journal.getSegmentCount() +
+                    " incomplete=" + journal.getIncompleteCount() + " forces=" + journal.getForceCount());
+        }
     }
 
-    private static void logout(String[] tokens) {
-        if ((currentCaregiver == null) && (currentPatient == null)) {
-            System.out.println("Please login first");
+    private static void explain(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        // explain <command>
+        if (tokens.length != 2) {
+            out.println("Please try again!");
+            return;
+        }
+        if (!Stores.isJdbc()) {
+            out.println("explain needs the jdbc storage backend");
+            return;
+        }
+        try {
+            QueryPlans.explain(tokens[1], out);
+        } catch (IllegalArgumentException e) {
+            out.println("Commands with statements to explain: " + String.join(", ", QueryPlans.getCommands()));
+        } catch (SQLException e) {
+            out.println("Could not explain " + tokens[1] + ": " + e.getMessage());
+        }
+    }
+
+    private static void printUsernameIndex(String name, UsernameIndex index, PrintStream out) {
+        if (!index.isLoaded()) {
+            out.println("Username filter (" + name + "): not loaded");
+            return;
+        }
+        out.println(String.format("Username filter (%s): names=%d memory=%dKB fpp=%.4f%% skipped=%d recent=%d " +
+                        "lookups=%d falsePositives=%d", name, index.getNames(), index.getMemoryBytes() / 1024,
+                index.getFalsePositiveRate() * 100, index.getSkipped(), index.getRecentHits(), index.getLookups(),
+                index.getFalsePositives()));
+    }
+
+    private static void logout(Session session, String[] tokens) {
+        PrintStream out = session.getOut();
+        if (!session.isLoggedIn()) {
+            out.println("Please login first");
             return;
         }
         if (tokens.length != 1) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             return;
         }
 
-        currentCaregiver = null;
-        currentPatient = null;
-        System.out.println("Successfully logged out!");
+        // a token handed out for this login can't be used to resume it any more
+        if (session.getSessionToken() != null) {
+            SessionTokenService.getInstance().revoke(session.getSessionToken());
+        }
+        session.logout();
+        out.println("Successfully logged out!");
     }
 }
 
@@ -0,0 +1,125 @@
+package scheduler;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.store.Stores;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a file of Scheduler commands without prompts, e.g. for nightly data loads.
+ *
+ * With the jdbc storage backend the whole run uses one pinned connection, so every command reuses the same
+ * session and its server-side prepared statements. With a group size above 1, consecutive add_doses /
+ * upload_availability commands are committed together in one transaction instead of one at a time.
+ */
+public class ScriptRunner {
+    private final int groupSize;
+    private final Map<String, List<Long>> latencies = new TreeMap<>();
+
+    public ScriptRunner(int groupSize) {
+        this.groupSize = groupSize;
+    }
+
+    public void run(BufferedReader in, PrintStream out) throws IOException, SQLException {
+        Session session = new Session(out);
+        // memory stores have no connection to pin and no transaction to group into
+        Connection con = Stores.isJdbc() ? ConnectionManager.pin() : null;
+        int commands = 0;
+        int failed = 0;
+        int grouped = 0;
+        long start = System.nanoTime();
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                // skip blank lines and comments
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String operation = line.split(" ")[0];
+                boolean groupable = con != null && groupSize > 1 && isGroupable(operation);
+                if (grouped > 0 && (!groupable || grouped >= groupSize)) {
+                    commitGroup(con);
+                    grouped = 0;
+                }
+                if (groupable && grouped == 0) {
+                    con.setAutoCommit(false);
+                }
+
+                long begin = System.nanoTime();
+                boolean keepGoing = true;
+                try {
+                    keepGoing = Scheduler.execute(session, line);
+                } catch (RuntimeException e) {
+                    // e.g. a number that doesn't parse; skip the line and keep the rest of the script and its group
+                    out.println("Please try again! " + e);
+                    failed++;
+                }
+                latencies.computeIfAbsent(operation, op -> new ArrayList<>()).add(System.nanoTime() - begin);
+                commands++;
+                if (groupable) {
+                    grouped++;
+                }
+                if (!keepGoing) {
+                    break;
+                }
+            }
+            if (grouped > 0) {
+                commitGroup(con);
+            }
+        } finally {
+            if (con != null) {
+                ConnectionManager.unpin();
+            }
+        }
+        printStats(out, commands, failed, System.nanoTime() - start);
+    }
+
+    // independent mutations that are safe to commit together
+    private static boolean isGroupable(String operation) {
+        return operation.equals("add_doses") || operation.equals("upload_availability");
+    }
+
+    private static void commitGroup(Connection con) throws SQLException {
+        try {
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            con.setAutoCommit(true);
+            // the caches already saw the rolled back changes, reload them from the database
+            AvailabilityIndex.getInstance().refresh();
+            VaccineInventory.getInstance().reconcile();
+            throw e;
+        }
+        con.setAutoCommit(true);
+    }
+
+    private void printStats(PrintStream out, int commands, int failed, long elapsedNanos) {
+        out.println();
+        out.printf("Executed %d commands (%d failed) in %d ms (%.1f commands/s)%n", commands, failed,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), commands / Math.max(elapsedNanos / 1e9, 1e-9));
+        for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            out.printf("  %-26s count=%d p50=%.3fms p99=%.3fms max=%.3fms%n", entry.getKey(), sorted.length,
+                    percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,100 @@
+package scheduler;
+
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+
+import java.io.PrintStream;
+
+/**
+ * Per-client state for the command handlers in Scheduler: who is logged in and where output goes.
+ * The interactive REPL uses one session on System.out, the network server creates one per connection.
+ */
+public class Session {
+    // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
+    //       since only one user can be logged-in per session at a time
+    private Caregiver currentCaregiver = null;
+    private Patient currentPatient = null;
+    // token issued by login --token or used by resume, revoked on logout
+    private String sessionToken = null;
+    // when this session last used the primary database, for read-your-writes on the read replica
+    private volatile long lastWriteMillis = 0;
+    private final PrintStream out;
+    // true for sessions of remote clients in server mode, which get fewer commands than the local prompt
+    private final boolean remote;
+    // output of the command running on this thread, while a CommandPipeline buffers it
+    private final ThreadLocal<PrintStream> redirected = new ThreadLocal<>();
+
+    public Session(PrintStream out) {
+        this(out, false);
+    }
+
+    public Session(PrintStream out, boolean remote) {
+        this.out = out;
+        this.remote = remote;
+    }
+
+    // Getters
+    public Caregiver getCurrentCaregiver() {
+        return currentCaregiver;
+    }
+
+    public Patient getCurrentPatient() {
+        return currentPatient;
+    }
+
+    public PrintStream getOut() {
+        PrintStream commandOut = redirected.get();
+        return commandOut == null ? out : commandOut;
+    }
+
+    // Sends this thread's output to out until redirect(null)
+    void redirect(PrintStream out) {
+        if (out == null) {
+            redirected.remove();
+        } else {
+            redirected.set(out);
+        }
+    }
+
+    public boolean isRemote() {
+        return remote;
+    }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    public long getLastWriteMillis() {
+        return lastWriteMillis;
+    }
+
+    public void setLastWriteMillis(long lastWriteMillis) {
+        this.lastWriteMillis = lastWriteMillis;
+    }
+
+    public boolean isLoggedIn() {
+        return currentCaregiver != null || currentPatient != null;
+    }
+
+    public void login(Caregiver caregiver) {
+        this.currentCaregiver = caregiver;
+        this.currentPatient = null;
+        this.sessionToken = null;
+    }
+
+    public void login(Patient patient) {
+        this.currentPatient = patient;
+        this.currentCaregiver = null;
+        this.sessionToken = null;
+    }
+
+    public void logout() {
+        this.currentCaregiver = null;
+        this.currentPatient = null;
+        this.sessionToken = null;
+    }
+}
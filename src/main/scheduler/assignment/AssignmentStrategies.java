@@ -0,0 +1,50 @@
+package scheduler.assignment;
+
+/**
+ * Holds the strategy reserve uses, chosen at startup from AssignmentStrategy (first_available, random,
+ * round_robin or least_loaded; default round_robin).
+ */
+public final class AssignmentStrategies {
+    private static volatile CaregiverAssignmentStrategy current = fromEnv("AssignmentStrategy");
+
+    private AssignmentStrategies() {
+    }
+
+    public static CaregiverAssignmentStrategy get() {
+        return current;
+    }
+
+    public static void set(CaregiverAssignmentStrategy strategy) {
+        current = strategy;
+    }
+
+    // An unknown name is reported and replaced by the default, so a typo can't break every reserve
+    private static CaregiverAssignmentStrategy fromEnv(String name) {
+        String value = System.getenv(name);
+        try {
+            return fromName(value);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return fromName(null);
+        }
+    }
+
+    // null picks the default
+    public static CaregiverAssignmentStrategy fromName(String name) {
+        if (name == null) {
+            return new RoundRobinStrategy();
+        }
+        switch (name.trim().toLowerCase()) {
+            case "first_available":
+                return new FirstAvailableStrategy();
+            case "random":
+                return new RandomStrategy();
+            case "round_robin":
+                return new RoundRobinStrategy();
+            case "least_loaded":
+                return new LeastLoadedStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown assignment strategy " + name);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package scheduler.assignment;
+
+import java.sql.Date;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * Decides in which order reserve tries the caregivers available on a date. reserve claims the first one whose
+ * availability it can still delete, so strategies that hand concurrent callers different first choices keep
+ * them from fighting over the same Availabilities row.
+ */
+public interface CaregiverAssignmentStrategy {
+    String getName();
+
+    // candidates are sorted by username and may be changed concurrently, the result is a private copy
+    List<String> order(Date date, NavigableSet<String> candidates);
+
+    // An appointment with the caregiver on that date was committed
+    default void booked(Date date, String caregiver) {
+    }
+
+    // An appointment with the caregiver on that date was cancelled
+    default void released(Date date, String caregiver) {
+    }
+}
@@ -0,0 +1,21 @@
+package scheduler.assignment;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * The original behaviour: caregivers in username order.
+ */
+public class FirstAvailableStrategy implements CaregiverAssignmentStrategy {
+    @Override
+    public String getName() {
+        return "first_available";
+    }
+
+    @Override
+    public List<String> order(Date date, NavigableSet<String> candidates) {
+        return new ArrayList<>(candidates);
+    }
+}
@@ -0,0 +1,110 @@
+package scheduler.assignment;
+
+import scheduler.store.Stores;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prefers the caregivers with the fewest appointments in the week (Monday to Sunday) of the requested date.
+ *
+ * A caregiver has at most one availability per date, so counts are kept per week instead of per day. Each
+ * week's counts are loaded from Appointments the first time order() is asked about the week and kept up to
+ * date by booked() and released(); those skip weeks that are not loaded, whose counts will come from
+ * Appointments anyway. Weeks that are over are dropped whenever a new week is loaded. Caregivers with the same
+ * count are tried starting at a position that moves on with every call, so concurrent reserves don't all go
+ * for the same caregiver.
+ */
+public class LeastLoadedStrategy implements CaregiverAssignmentStrategy {
+    // week start -> caregiver -> appointments that week
+    private final ConcurrentHashMap<LocalDate, ConcurrentHashMap<String, AtomicInteger>> bookings =
+            new ConcurrentHashMap<>();
+    private final AtomicInteger turns = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return "least_loaded";
+    }
+
+    @Override
+    public List<String> order(Date date, NavigableSet<String> candidates) {
+        List<String> ordered = new ArrayList<>(candidates);
+        // loaded even for a single candidate, so booked() finds the week and doesn't count the booking twice
+        Map<String, AtomicInteger> counts = bookingsFor(date);
+        if (ordered.size() < 2) {
+            return ordered;
+        }
+        Collections.rotate(ordered, -Math.floorMod(turns.getAndIncrement(), ordered.size()));
+        // stable sort, so caregivers with equal counts keep the rotated order
+        ordered.sort(Comparator.comparingInt(caregiver -> count(counts, caregiver)));
+        return ordered;
+    }
+
+    @Override
+    public void booked(Date date, String caregiver) {
+        Map<String, AtomicInteger> counts = bookings.get(weekStart(date));
+        if (counts != null) {
+            counts.computeIfAbsent(caregiver, c -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void released(Date date, String caregiver) {
+        Map<String, AtomicInteger> counts = bookings.get(weekStart(date));
+        AtomicInteger count = counts == null ? null : counts.get(caregiver);
+        if (count != null) {
+            count.updateAndGet(c -> Math.max(0, c - 1));
+        }
+    }
+
+    private static int count(Map<String, AtomicInteger> counts, String caregiver) {
+        AtomicInteger count = counts.get(caregiver);
+        return count == null ? 0 : count.get();
+    }
+
+    private static LocalDate weekStart(Date date) {
+        return weekStart(date.toLocalDate());
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private Map<String, AtomicInteger> bookingsFor(Date date) {
+        LocalDate weekStart = weekStart(date);
+        ConcurrentHashMap<String, AtomicInteger> counts = bookings.get(weekStart);
+        if (counts != null) {
+            return counts;
+        }
+        LocalDate thisWeek = weekStart(LocalDate.now());
+        bookings.keySet().removeIf(week -> week.isBefore(thisWeek));
+        try {
+            // load before publishing, like AvailabilityIndex, so nobody sees a half-filled week
+            ConcurrentHashMap<String, AtomicInteger> loaded = loadWeek(weekStart);
+            counts = bookings.putIfAbsent(weekStart, loaded);
+            return counts == null ? loaded : counts;
+        } catch (SQLException e) {
+            // without counts every caregiver looks equally loaded, try again on the next call
+            System.out.println("Could not load caregiver bookings for the week of " + weekStart);
+            return new ConcurrentHashMap<>();
+        }
+    }
+
+    private static ConcurrentHashMap<String, AtomicInteger> loadWeek(LocalDate weekStart) throws SQLException {
+        ConcurrentHashMap<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+        Stores.appointments().countByCaregiver(Date.valueOf(weekStart), Date.valueOf(weekStart.plusWeeks(1)))
+                .forEach((caregiver, count) -> counts.put(caregiver, new AtomicInteger(count)));
+        return counts;
+    }
+}
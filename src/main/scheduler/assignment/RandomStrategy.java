@@ -0,0 +1,27 @@
+package scheduler.assignment;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts at a random caregiver and continues in username order, wrapping around.
+ */
+public class RandomStrategy implements CaregiverAssignmentStrategy {
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public List<String> order(Date date, NavigableSet<String> candidates) {
+        List<String> ordered = new ArrayList<>(candidates);
+        if (ordered.size() > 1) {
+            Collections.rotate(ordered, -ThreadLocalRandom.current().nextInt(ordered.size()));
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,43 @@
+package scheduler.assignment;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Each reserve for a date starts one caregiver further along than the previous one, wrapping around. Cursors of
+ * dates in the past are dropped whenever a new date gets one.
+ */
+public class RoundRobinStrategy implements CaregiverAssignmentStrategy {
+    private final ConcurrentHashMap<LocalDate, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "round_robin";
+    }
+
+    @Override
+    public List<String> order(Date date, NavigableSet<String> candidates) {
+        List<String> ordered = new ArrayList<>(candidates);
+        if (ordered.size() > 1) {
+            int turn = cursorFor(date.toLocalDate()).getAndIncrement();
+            Collections.rotate(ordered, -Math.floorMod(turn, ordered.size()));
+        }
+        return ordered;
+    }
+
+    private AtomicInteger cursorFor(LocalDate date) {
+        AtomicInteger cursor = cursors.get(date);
+        if (cursor != null) {
+            return cursor;
+        }
+        LocalDate today = LocalDate.now();
+        cursors.keySet().removeIf(d -> d.isBefore(today));
+        return cursors.computeIfAbsent(date, d -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,195 @@
+package scheduler.bench;
+
+import scheduler.db.ConnectionManager;
+import scheduler.util.Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Creates the create.sql schema in the benchmark database and fills it with a synthetic data set.
+ *
+ * Every user shares the password PASSWORD so login benchmarks can pick any of them.
+ */
+public class BenchmarkData {
+    public static final String PASSWORD = "password";
+    public static final String[] VACCINES = {"Moderna", "Pfizer", "Janssen"};
+    public static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 1);
+    public static final int DAYS = 365;
+    // caregivers publish availability for the first AVAILABILITY_DAYS days only
+    public static final int AVAILABILITY_DAYS = 30;
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private final int appointments;
+    private final int caregivers;
+    private final int patients;
+
+    public BenchmarkData(int appointments) {
+        this.appointments = appointments;
+        this.caregivers = Math.max(100, appointments / 100);
+        this.patients = Math.max(100, appointments / 10);
+    }
+
+    // Getters
+    public int getAppointments() {
+        return appointments;
+    }
+
+    public int getCaregivers() {
+        return caregivers;
+    }
+
+    public int getPatients() {
+        return patients;
+    }
+
+    public static String caregiverName(int i) {
+        return "caregiver" + i;
+    }
+
+    public static String patientName(int i) {
+        return "patient" + i;
+    }
+
+    public static Date day(int i) {
+        return Date.valueOf(FIRST_DAY.plusDays(i % DAYS));
+    }
+
+    // Runs every statement of the schema script, skipping tables that already exist
+    public static void createSchema(String schemaPath) throws IOException {
+        String script = readSchema(schemaPath);
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try {
+            for (String sql : script.split(";")) {
+                if (sql.isBlank()) {
+                    continue;
+                }
+                try (Statement statement = con.createStatement()) {
+                    statement.execute(sql);
+                } catch (SQLException e) {
+                    System.out.println("Skipping schema statement (" + e.getMessage() + ")");
+                }
+            }
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static String readSchema(String schemaPath) throws IOException {
+        if (schemaPath != null) {
+            return Files.readString(Paths.get(schemaPath), StandardCharsets.UTF_8);
+        }
+        try (InputStream in = BenchmarkData.class.getResourceAsStream("/resources/create.sql")) {
+            if (in != null) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        Path source = Paths.get("src", "main", "resources", "create.sql");
+        return Files.readString(source, StandardCharsets.UTF_8);
+    }
+
+    // Deletes the rows of every table, children first
+    public static void deleteAll() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try (Statement statement = con.createStatement()) {
+            statement.executeUpdate("DELETE FROM Waitlist");
+            statement.executeUpdate("DELETE FROM Appointments");
+            statement.executeUpdate("DELETE FROM Availabilities");
+            statement.executeUpdate("DELETE FROM Vaccines");
+            statement.executeUpdate("DELETE FROM Patients");
+            statement.executeUpdate("DELETE FROM Caregivers");
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Deletes all rows and loads caregivers, patients, vaccines, availabilities and appointments
+    public void load() throws SQLException {
+        deleteAll();
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try {
+            byte[] salt = Util.generateSalt();
+            byte[] hash = Util.generateHash(PASSWORD, salt);
+            con.setAutoCommit(false);
+
+            try (PreparedStatement statement = con.prepareStatement("INSERT INTO Caregivers VALUES (?, ?, ?)")) {
+                for (int i = 0; i < caregivers; i++) {
+                    statement.setString(1, caregiverName(i));
+                    statement.setBytes(2, salt);
+                    statement.setBytes(3, hash);
+                    addToBatch(con, statement, i);
+                }
+                flushBatch(con, statement);
+            }
+            try (PreparedStatement statement = con.prepareStatement("INSERT INTO Patients VALUES (?, ?, ?)")) {
+                for (int i = 0; i < patients; i++) {
+                    statement.setString(1, patientName(i));
+                    statement.setBytes(2, salt);
+                    statement.setBytes(3, hash);
+                    addToBatch(con, statement, i);
+                }
+                flushBatch(con, statement);
+            }
+            try (PreparedStatement statement = con.prepareStatement("INSERT INTO Vaccines VALUES (?, ?)")) {
+                for (String vaccine : VACCINES) {
+                    statement.setString(1, vaccine);
+                    statement.setInt(2, Integer.MAX_VALUE / 2);
+                    statement.addBatch();
+                }
+                flushBatch(con, statement);
+            }
+            // every caregiver is available on each of the first AVAILABILITY_DAYS days
+            try (PreparedStatement statement = con.prepareStatement("INSERT INTO Availabilities VALUES (?, ?)")) {
+                int row = 0;
+                for (int d = 0; d < AVAILABILITY_DAYS; d++) {
+                    for (int c = 0; c < caregivers; c++) {
+                        statement.setDate(1, day(d));
+                        statement.setString(2, caregiverName(c));
+                        addToBatch(con, statement, row++);
+                    }
+                }
+                flushBatch(con, statement);
+            }
+            try (PreparedStatement statement = con.prepareStatement(
+                    "INSERT INTO Appointments (CaregiverName, PatientName, Time, Vaccine) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < appointments; i++) {
+                    statement.setString(1, caregiverName(i % caregivers));
+                    statement.setString(2, patientName(i % patients));
+                    statement.setDate(3, day(i));
+                    statement.setString(4, VACCINES[i % VACCINES.length]);
+                    addToBatch(con, statement, i);
+                }
+                flushBatch(con, statement);
+            }
+            con.setAutoCommit(true);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static void addToBatch(Connection con, PreparedStatement statement, int row) throws SQLException {
+        statement.addBatch();
+        if ((row + 1) % BATCH_SIZE == 0) {
+            flushBatch(con, statement);
+        }
+    }
+
+    private static void flushBatch(Connection con, PreparedStatement statement) throws SQLException {
+        statement.executeBatch();
+        con.commit();
+    }
+}
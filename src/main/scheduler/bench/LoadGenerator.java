@@ -0,0 +1,425 @@
+package scheduler.bench;
+
+import scheduler.Scheduler;
+import scheduler.Session;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.db.ConnectionPool;
+import scheduler.db.MigrationRunner;
+import scheduler.metrics.LatencyHistogram;
+import scheduler.metrics.Metrics;
+import scheduler.model.Appointment;
+import scheduler.model.AppointmentFilter;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Vaccine;
+import scheduler.store.Stores;
+import scheduler.util.Util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Drives a random mix of reserve, cancel, search_caregiver_schedule, upload_availability and add_doses from many
+ * threads, then checks that the data is still consistent.
+ *
+ * Usage: LoadGenerator [--patients 1000] [--caregivers 50] [--vaccines 3] [--doses 500] [--days 14] [--threads 16]
+ *                      [--duration <ms>] [--mix reserve=40,cancel=15,search_caregiver_schedule=30,...]
+ *                      [--schema <create.sql>]
+ *
+ * Users, vaccines and the caregivers' availability for the first days are created through the model classes.
+ * With the jdbc backend every table is wiped first, so JdbcUrl has to point at a dedicated (typically embedded)
+ * database; StorageBackend=memory needs no database at all. The checks at the end read the stores:
+ * no vaccine has negative doses, no caregiver has two appointments on one date or is still offered on a date it
+ * is booked, and doses left plus appointments equal the doses created plus the doses added. The exit code is 1
+ * if any of them fails.
+ */
+public class LoadGenerator {
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+    private static final String[] OPERATIONS = {"reserve", "cancel", "search_caregiver_schedule",
+            "upload_availability", "add_doses"};
+    private static final long SAMPLE_MILLIS = 50;
+
+    private final int patientCount;
+    private final int caregiverCount;
+    private final int vaccineCount;
+    private final int doses;
+    private final int days;
+    private final int[] weights;
+
+    private final Patient[] patients;
+    private final Caregiver[] caregivers;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    // refused: reserve found no caregiver or dose, cancel had nothing booked to cancel
+    private final LongAdder[] refused = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+    private final LongAdder addedDoses = new LongAdder();
+    // AppointmentID -> PatientName of the appointments booked so far, for cancel
+    private final ConcurrentLinkedQueue<Map.Entry<Integer, String>> booked = new ConcurrentLinkedQueue<>();
+
+    private int peakActive = 0;
+    private long activeSum = 0;
+    private long activeSamples = 0;
+
+    public LoadGenerator(int patientCount, int caregiverCount, int vaccineCount, int doses, int days, int[] weights) {
+        this.patientCount = patientCount;
+        this.caregiverCount = caregiverCount;
+        this.vaccineCount = vaccineCount;
+        this.doses = doses;
+        this.days = days;
+        this.weights = weights;
+        this.patients = new Patient[patientCount];
+        this.caregivers = new Caregiver[caregiverCount];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            refused[i] = new LongAdder();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int patients = 1000;
+        int caregivers = 50;
+        int vaccines = 3;
+        int doses = 500;
+        int days = 14;
+        int threads = 16;
+        long duration = 10_000;
+        int[] weights = {40, 15, 30, 10, 5};
+        String schema = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--patients":
+                    patients = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--caregivers":
+                    caregivers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--vaccines":
+                    vaccines = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--doses":
+                    doses = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--days":
+                    days = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--duration":
+                    duration = Long.parseLong(args[i + 1]);
+                    break;
+                case "--mix":
+                    weights = parseMix(args[i + 1]);
+                    break;
+                case "--schema":
+                    schema = args[i + 1];
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        if (Stores.isJdbc() && System.getenv("JdbcUrl") == null) {
+            System.out.println("Set JdbcUrl to a dedicated database, the load generator deletes all rows.");
+            return;
+        }
+
+        if (Stores.isJdbc()) {
+            ConnectionManager.init();
+            BenchmarkData.createSchema(schema);
+            MigrationRunner.migrate();
+            BenchmarkData.deleteAll();
+        }
+        boolean consistent;
+        try {
+            LoadGenerator generator = new LoadGenerator(patients, caregivers, vaccines, doses, days, weights);
+            generator.setUp();
+            generator.run(threads, duration);
+            consistent = generator.checkInvariants();
+        } finally {
+            VaccineInventory.getInstance().close();
+            if (Stores.isJdbc()) {
+                ConnectionManager.shutdown();
+            }
+        }
+        System.exit(consistent ? 0 : 1);
+    }
+
+    // reserve=40,cancel=15,... in any order; operations that are left out don't run
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[OPERATIONS.length];
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            int operation = List.of(OPERATIONS).indexOf(pair[0].trim());
+            if (pair.length != 2 || operation < 0) {
+                throw new IllegalArgumentException("Unknown operation in --mix: " + part + ", expected one of " +
+                        String.join(", ", OPERATIONS));
+            }
+            weights[operation] = Integer.parseInt(pair[1].trim());
+        }
+        return weights;
+    }
+
+    private static String vaccineName(int i) {
+        return "LoadVaccine" + i;
+    }
+
+    // Creates everyone through the model classes, which keep the in-memory caches up to date
+    public void setUp() throws SQLException {
+        long start = System.nanoTime();
+        byte[] salt = Util.generateSalt();
+        byte[] hash = Util.generateHash(BenchmarkData.PASSWORD, salt);
+        List<Date> dates = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            dates.add(BenchmarkData.day(d));
+        }
+        for (int c = 0; c < caregiverCount; c++) {
+            caregivers[c] = new Caregiver.CaregiverBuilder(BenchmarkData.caregiverName(c), salt, hash).build();
+            caregivers[c].saveToDB();
+            caregivers[c].uploadAvailability(dates);
+        }
+        for (int p = 0; p < patientCount; p++) {
+            patients[p] = new Patient.PatientBuilder(BenchmarkData.patientName(p), salt, hash).build();
+            patients[p].saveToDB();
+        }
+        for (int v = 0; v < vaccineCount; v++) {
+            new Vaccine.VaccineBuilder(vaccineName(v), doses).build().saveToDB();
+        }
+        System.out.printf("Created %d patients, %d caregivers available on %d days and %d vaccines with %d doses " +
+                "each in %.1fs%n", patientCount, caregiverCount, days, vaccineCount, doses,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    // Runs the mix on all threads for durationMillis and prints throughput and latency per operation
+    public void run(int threads, long durationMillis) throws InterruptedException {
+        int totalWeight = 0;
+        for (int weight : weights) {
+            totalWeight += weight;
+        }
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        int total = totalWeight;
+        CountDownLatch startGate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    startGate.await();
+                    while (System.nanoTime() < deadline) {
+                        runOne(pick(ThreadLocalRandom.current().nextInt(total)));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        // sample the pool while the workers run
+        while (!done.await(SAMPLE_MILLIS, TimeUnit.MILLISECONDS)) {
+            sampleConnections();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        report(threads, seconds);
+    }
+
+    private int pick(int ticket) {
+        for (int i = 0; i < weights.length; i++) {
+            ticket -= weights[i];
+            if (ticket < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private void runOne(int operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long begin = System.nanoTime();
+        try {
+            switch (OPERATIONS[operation]) {
+                case "reserve": {
+                    Patient patient = patients[random.nextInt(patientCount)];
+                    int appointmentID = patient.reserve(patient.getUsername(), BenchmarkData.day(random.nextInt(days)),
+                            vaccineName(random.nextInt(vaccineCount)), NULL_OUT);
+                    if (appointmentID > 0) {
+                        booked.add(new AbstractMap.SimpleImmutableEntry<>(appointmentID, patient.getUsername()));
+                    } else {
+                        refused[operation].increment();
+                    }
+                    break;
+                }
+                case "cancel": {
+                    // cancel runs through the command so the caches are given the slot and dose back as usual
+                    Map.Entry<Integer, String> appointment = booked.poll();
+                    if (appointment == null) {
+                        refused[operation].increment();
+                        break;
+                    }
+                    Session session = new Session(NULL_OUT);
+                    session.login(new Patient.PatientBuilder(appointment.getValue(), null, null).build());
+                    Scheduler.execute(session, "cancel " + appointment.getKey());
+                    break;
+                }
+                case "search_caregiver_schedule":
+                    Scheduler.getSchedule(BenchmarkData.day(random.nextInt(days)), NULL_OUT);
+                    break;
+                case "upload_availability":
+                    caregivers[random.nextInt(caregiverCount)].uploadAvailability(
+                            List.of(BenchmarkData.day(random.nextInt(days))));
+                    break;
+                case "add_doses": {
+                    int num = 1 + random.nextInt(10);
+                    new Vaccine.VaccineGetter(vaccineName(random.nextInt(vaccineCount))).get()
+                            .increaseAvailableDoses(num);
+                    addedDoses.add(num);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException(OPERATIONS[operation]);
+            }
+        } catch (Exception e) {
+            errors[operation].increment();
+        }
+        latencies[operation].record(System.nanoTime() - begin);
+    }
+
+    private synchronized void sampleConnections() {
+        if (!Stores.isJdbc()) {
+            return;
+        }
+        int active = ConnectionManager.getPool().getActiveConnections();
+        peakActive = Math.max(peakActive, active);
+        activeSum += active;
+        activeSamples++;
+    }
+
+    private void report(int threads, double seconds) {
+        System.out.println();
+        System.out.printf("%-26s %10s %10s %9s %9s %10s %10s %10s%n", "operation", "ops", "ops/s", "refused",
+                "errors", "p50 ms", "p99 ms", "max ms");
+        long totalOps = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            LatencyHistogram histogram = latencies[i];
+            totalOps += histogram.getCount();
+            System.out.printf("%-26s %10d %10.1f %9d %9d %10.3f %10.3f %10.3f%n", OPERATIONS[i],
+                    histogram.getCount(), histogram.getCount() / seconds, refused[i].sum(), errors[i].sum(),
+                    histogram.percentile(0.5) / 1e6, histogram.percentile(0.99) / 1e6, histogram.getMax() / 1e6);
+        }
+        System.out.printf("%-26s %10d %10.1f   (%d threads, %.1fs)%n", "total", totalOps, totalOps / seconds,
+                threads, seconds);
+        if (Stores.isJdbc()) {
+            ConnectionPool pool = ConnectionManager.getPool();
+            System.out.printf("Connections: max=%d total=%d peak active=%d mean active=%.1f acquire p99=%.3fms%n",
+                    pool.getMaxSize(), pool.getTotalConnections(), peakActive,
+                    activeSamples == 0 ? 0 : (double) activeSum / activeSamples,
+                    Metrics.getInstance().getConnectionAcquireP99Millis());
+        } else {
+            System.out.println("Connections: none, memory storage backend");
+        }
+    }
+
+    // Reads the stores after the run and prints every invariant. Returns false if any is violated.
+    public boolean checkInvariants() throws SQLException {
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        if (inventory.isWriteBehind()) {
+            // the doses still buffered in memory are part of what is checked
+            inventory.flush();
+        }
+
+        Map<String, Integer> stored = Stores.vaccines().getAll();
+        int negative = 0;
+        long dosesLeft = 0;
+        for (int v = 0; v < vaccineCount; v++) {
+            int left = stored.getOrDefault(vaccineName(v), 0);
+            if (left < 0) {
+                negative++;
+            }
+            dosesLeft += left;
+        }
+
+        Map<LocalDate, NavigableSet<String>> available = Stores.availabilities().getAll();
+        long[] appointments = {0};
+        int[] doubleBooked = {0};
+        int[] stillOffered = {0};
+        for (Caregiver caregiver : caregivers) {
+            String name = caregiver.getUsername();
+            Set<LocalDate> bookedDays = new HashSet<>();
+            forEachAppointment(name, appointment -> {
+                appointments[0]++;
+                LocalDate day = appointment.getTime().toLocalDate();
+                if (!bookedDays.add(day)) {
+                    doubleBooked[0]++;
+                }
+                NavigableSet<String> caregiversThatDay = available.get(day);
+                if (caregiversThatDay != null && caregiversThatDay.contains(name)) {
+                    stillOffered[0]++;
+                }
+            });
+        }
+
+        long created = (long) vaccineCount * doses + addedDoses.sum();
+        boolean ok = true;
+        ok &= check("no negative doses", negative == 0, negative + " vaccines below zero");
+        ok &= check("no caregiver double-booked", doubleBooked[0] == 0,
+                doubleBooked[0] + " extra appointments on a caregiver's booked date");
+        ok &= check("no booked caregiver still available", stillOffered[0] == 0,
+                stillOffered[0] + " appointments whose caregiver is still available that date");
+        ok &= check("doses conserved", dosesLeft + appointments[0] == created, "doses left " + dosesLeft +
+                " + appointments " + appointments[0] + " = " + (dosesLeft + appointments[0]) + ", created " + created);
+        System.out.println("Invariants: " + (ok ? "OK" : "VIOLATED"));
+        return ok;
+    }
+
+    private static boolean check(String name, boolean holds, String detail) {
+        System.out.println("  " + name + ": " + (holds ? "OK" : "FAILED (" + detail + ")"));
+        return holds;
+    }
+
+    // Pages through all of the caregiver's appointments, newest first
+    private static void forEachAppointment(String caregiverName, Consumer<Appointment> consumer)
+            throws SQLException {
+        AtomicInteger lastID = new AtomicInteger(-1);
+        while (true) {
+            AppointmentFilter.AppointmentFilterBuilder builder = new AppointmentFilter.AppointmentFilterBuilder()
+                    .limit(AppointmentFilter.MAX_LIMIT);
+            if (lastID.get() >= 0) {
+                builder.after(lastID.get());
+            }
+            int[] rows = {0};
+            Stores.appointments().forEachOfCaregiver(caregiverName, builder.build(), appointment -> {
+                lastID.set(appointment.getAppointmentID());
+                rows[0]++;
+                consumer.accept(appointment);
+            });
+            if (rows[0] < AppointmentFilter.MAX_LIMIT) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package scheduler.bench;
+
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.db.MigrationRunner;
+import scheduler.model.AppointmentFilter;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Vaccine;
+import scheduler.store.Stores;
+import scheduler.util.Util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that reserve never oversells: N threads, each with its own patient, reserve on one date at the same
+ * moment, against K caregivers available that date and a vaccine with D doses.
+ *
+ * Usage: OversellCheck [--threads 64] [--slots 20] [--doses 15] [--rounds 4] [--schema <create.sql>]
+ *
+ * Every round uses a new date and vaccine; odd rounds swap slots and doses, so both limits are hit. After each
+ * round at most min(K, D) patients may have been booked, the store must hold exactly that many appointments on
+ * the date, each with a different caregiver, and the doses and slots left must be D and K minus the bookings.
+ * The exit code is 1 if any round fails. Like LoadGenerator it runs on StorageBackend=memory, or wipes the
+ * database behind JdbcUrl.
+ */
+public class OversellCheck {
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private final int threads;
+    private final Patient[] patients;
+    private final Caregiver[] caregivers;
+
+    public OversellCheck(int threads, int slots) {
+        this.threads = threads;
+        this.patients = new Patient[threads];
+        this.caregivers = new Caregiver[slots];
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 64;
+        int slots = 20;
+        int doses = 15;
+        int rounds = 4;
+        String schema = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--slots":
+                    slots = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--doses":
+                    doses = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--schema":
+                    schema = args[i + 1];
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        if (Stores.isJdbc() && System.getenv("JdbcUrl") == null) {
+            System.out.println("Set JdbcUrl to a dedicated database, the oversell check deletes all rows.");
+            return;
+        }
+
+        if (Stores.isJdbc()) {
+            ConnectionManager.init();
+            BenchmarkData.createSchema(schema);
+            MigrationRunner.migrate();
+            BenchmarkData.deleteAll();
+        }
+        boolean ok = true;
+        try {
+            OversellCheck check = new OversellCheck(threads, Math.max(slots, doses));
+            check.setUp();
+            for (int round = 0; round < rounds; round++) {
+                boolean swap = round % 2 == 1;
+                ok &= check.runRound(round, swap ? doses : slots, swap ? slots : doses);
+            }
+        } finally {
+            VaccineInventory.getInstance().close();
+            if (Stores.isJdbc()) {
+                ConnectionManager.shutdown();
+            }
+        }
+        System.out.println("Oversell check: " + (ok ? "OK" : "FAILED"));
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static String vaccineName(int round) {
+        return "OversellVaccine" + round;
+    }
+
+    public void setUp() throws SQLException {
+        byte[] salt = Util.generateSalt();
+        byte[] hash = Util.generateHash(BenchmarkData.PASSWORD, salt);
+        for (int c = 0; c < caregivers.length; c++) {
+            caregivers[c] = new Caregiver.CaregiverBuilder(BenchmarkData.caregiverName(c), salt, hash).build();
+            caregivers[c].saveToDB();
+        }
+        for (int p = 0; p < threads; p++) {
+            patients[p] = new Patient.PatientBuilder(BenchmarkData.patientName(p), salt, hash).build();
+            patients[p].saveToDB();
+        }
+    }
+
+    // Returns false if the round oversold or the counts left behind don't add up
+    public boolean runRound(int round, int slots, int doses) throws SQLException, InterruptedException {
+        Date date = BenchmarkData.day(round);
+        String vaccine = vaccineName(round);
+        for (int c = 0; c < slots; c++) {
+            caregivers[c].uploadAvailability(List.of(date));
+        }
+        new Vaccine.VaccineBuilder(vaccine, doses).build().saveToDB();
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch startGate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Patient patient = patients[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    startGate.await();
+                    if (patient.reserve(patient.getUsername(), date, vaccine, NULL_OUT) > 0) {
+                        booked.incrementAndGet();
+                    }
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "oversell-" + t);
+            worker.start();
+        }
+        startGate.countDown();
+        done.await();
+
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        if (inventory.isWriteBehind()) {
+            inventory.flush();
+        }
+        int dosesLeft = Stores.vaccines().getAll().getOrDefault(vaccine, 0);
+        NavigableSet<String> available = Stores.availabilities().getAll().get(date.toLocalDate());
+        int slotsLeft = 0;
+        int appointments = 0;
+        Set<String> bookedCaregivers = new HashSet<>();
+        AppointmentFilter onDate = new AppointmentFilter.AppointmentFilterBuilder().from(date).to(date)
+                .limit(AppointmentFilter.MAX_LIMIT).build();
+        for (int c = 0; c < slots; c++) {
+            String name = caregivers[c].getUsername();
+            if (available != null && available.contains(name)) {
+                slotsLeft++;
+            }
+            int[] rows = {0};
+            Stores.appointments().forEachOfCaregiver(name, onDate, appointment -> {
+                if (appointment.getVaccineName().equals(vaccine)) {
+                    rows[0]++;
+                }
+            });
+            appointments += rows[0];
+            if (rows[0] > 0) {
+                bookedCaregivers.add(name);
+            }
+        }
+
+        int limit = Math.min(slots, doses);
+        boolean ok = booked.get() <= limit && appointments == booked.get()
+                && bookedCaregivers.size() == appointments && dosesLeft == doses - booked.get()
+                && slotsLeft == slots - booked.get();
+        System.out.printf("Round %d (%d threads, %d slots, %d doses): booked=%d of at most %d errors=%d " +
+                        "appointments=%d caregivers=%d dosesLeft=%d slotsLeft=%d %s%n", round, threads, slots, doses,
+                booked.get(), limit, errors.get(), appointments, bookedCaregivers.size(), dosesLeft, slotsLeft,
+                ok ? "OK" : "OVERSOLD OR INCONSISTENT");
+        return ok;
+    }
+}
@@ -0,0 +1,363 @@
+package scheduler.bench;
+
+import scheduler.Scheduler;
+import scheduler.Session;
+import scheduler.assignment.AssignmentStrategies;
+import scheduler.assignment.CaregiverAssignmentStrategy;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.db.MigrationRunner;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Vaccine;
+import scheduler.util.HashingService;
+import scheduler.util.Util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmarks for the scheduler hot paths: hashing, login, schedule search, reserve, cancel and add_doses.
+ *
+ * Usage: SchedulerBenchmark [--sizes 1000,100000,1000000] [--threads 1,8] [--warmup <ms>] [--measure <ms>]
+ *                           [--schema <create.sql>]
+ *
+ * The benchmark wipes and reloads every table, so it refuses to run unless JdbcUrl points the connection pool
+ * at a dedicated (typically embedded, in-memory) database.
+ */
+public class SchedulerBenchmark {
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+    // latency samples kept per thread; operations beyond this are counted but not sampled
+    private static final int MAX_SAMPLES = 1_000_000;
+
+    private final long warmupMillis;
+    private final long measureMillis;
+    private final List<String> results = new ArrayList<>();
+
+    public SchedulerBenchmark(long warmupMillis, long measureMillis) {
+        this.warmupMillis = warmupMillis;
+        this.measureMillis = measureMillis;
+    }
+
+    public interface Operation {
+        void run(int thread) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {1_000, 100_000, 1_000_000};
+        int[] threads = {1, Runtime.getRuntime().availableProcessors()};
+        long warmup = 2_000;
+        long measure = 5_000;
+        String schema = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes":
+                    sizes = parseInts(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = parseInts(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Long.parseLong(args[i + 1]);
+                    break;
+                case "--measure":
+                    measure = Long.parseLong(args[i + 1]);
+                    break;
+                case "--schema":
+                    schema = args[i + 1];
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        if (System.getenv("JdbcUrl") == null) {
+            System.out.println("Set JdbcUrl to a dedicated benchmark database, the benchmark deletes all rows.");
+            return;
+        }
+
+        SchedulerBenchmark benchmark = new SchedulerBenchmark(warmup, measure);
+        benchmark.runHashing(threads);
+        ConnectionManager.init();
+        BenchmarkData.createSchema(schema);
+        // the hot-path indexes come from the migrations
+        MigrationRunner.migrate();
+        for (int size : sizes) {
+            benchmark.runDatabase(new BenchmarkData(size), threads);
+        }
+        ConnectionManager.shutdown();
+
+        System.out.println();
+        System.out.printf("%-30s %9s %7s %10s %12s %10s %10s %7s%n",
+                "benchmark", "size", "threads", "ops", "ops/s", "p50 us", "p99 us", "errors");
+        benchmark.results.forEach(System.out::println);
+    }
+
+    private static int[] parseInts(String csv) {
+        return Arrays.stream(csv.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    }
+
+    public void runHashing(int[] threads) throws InterruptedException {
+        byte[] salt = Util.generateSalt();
+        byte[] hash = Util.generateHash(BenchmarkData.PASSWORD, salt);
+        for (int t : threads) {
+            measure("util.generateSalt", 0, t, thread -> Util.generateSalt());
+            measure("util.generateHash", 0, t, thread -> Util.generateHash(BenchmarkData.PASSWORD, salt));
+            measure("hashing.verifyOffThread", 0, t, thread -> HashingService.getInstance().verifyOffThread(
+                    BenchmarkData.PASSWORD.toCharArray(), salt, hash));
+        }
+    }
+
+    public void runDatabase(BenchmarkData data, int[] threads) throws Exception {
+        System.out.println("Loading " + data.getAppointments() + " appointments...");
+        data.load();
+        AvailabilityIndex.getInstance().refresh();
+        VaccineInventory.getInstance().reconcile();
+        int size = data.getAppointments();
+
+        for (int t : threads) {
+            measure("login.patient", size, t, thread -> new Patient.PatientGetter(
+                    BenchmarkData.patientName(random(data.getPatients())), BenchmarkData.PASSWORD).get());
+            measure("login.caregiver", size, t, thread -> new Caregiver.CaregiverGetter(
+                    BenchmarkData.caregiverName(random(data.getCaregivers())), BenchmarkData.PASSWORD).get());
+            measure("scheduler.getSchedule", size, t, thread ->
+                    Scheduler.getSchedule(BenchmarkData.day(random(BenchmarkData.AVAILABILITY_DAYS)), NULL_OUT));
+            measure("vaccine.increaseDoses", size, t, thread -> new Vaccine.VaccineGetter(
+                    BenchmarkData.VACCINES[random(BenchmarkData.VACCINES.length)]).get().increaseAvailableDoses(1));
+        }
+
+        Patient patient = new Patient.PatientGetter(BenchmarkData.patientName(0), BenchmarkData.PASSWORD).get();
+        for (int t : threads) {
+            measure("patient.reserve", size, t, thread -> patient.reserve(patient.getUsername(),
+                    BenchmarkData.day(random(BenchmarkData.AVAILABILITY_DAYS)), BenchmarkData.VACCINES[0], NULL_OUT));
+        }
+
+        // cancel only works for the owner, so each cancel runs as the appointment's patient
+        ConcurrentLinkedQueue<Map.Entry<Integer, String>> appointments = new ConcurrentLinkedQueue<>(appointments());
+        for (int t : threads) {
+            measure("scheduler.cancel", size, t, thread -> {
+                Map.Entry<Integer, String> appointment = appointments.poll();
+                if (appointment == null) {
+                    throw new IllegalStateException("No appointments left to cancel");
+                }
+                Session session = new Session(NULL_OUT);
+                session.login(new Patient.PatientBuilder(appointment.getValue(), null, null).build());
+                Scheduler.execute(session, "cancel " + appointment.getKey());
+            });
+        }
+
+        // compare how well each assignment strategy spreads concurrent reserves for one date
+        CaregiverAssignmentStrategy configured = AssignmentStrategies.get();
+        try {
+            for (String strategy : new String[]{"first_available", "random", "round_robin", "least_loaded"}) {
+                AssignmentStrategies.set(AssignmentStrategies.fromName(strategy));
+                for (int t : threads) {
+                    runContendedReserve(data, size, t);
+                }
+            }
+        } finally {
+            AssignmentStrategies.set(configured);
+        }
+    }
+
+    // Every thread reserves on the same date until the doses run out, then the result is checked for overselling
+    private void runContendedReserve(BenchmarkData data, int size, int threads) throws Exception {
+        Date date = BenchmarkData.day(BenchmarkData.DAYS - 1);
+        String vaccine = "ContentionVaccine";
+        int doses = data.getCaregivers() / 2;
+        prepareContention(data, date, vaccine, doses);
+
+        Patient patient = new Patient.PatientGetter(BenchmarkData.patientName(0), BenchmarkData.PASSWORD).get();
+        AtomicLong booked = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+        long attempts = (long) doses * 2;
+        measureCount("patient.reserve.contended." + AssignmentStrategies.get().getName(), size, threads, attempts, thread -> {
+            if (patient.reserve(patient.getUsername(), date, vaccine, NULL_OUT) > 0) {
+                booked.incrementAndGet();
+            } else {
+                refused.incrementAndGet();
+            }
+        });
+
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try {
+            int appointments = queryInt(con, "SELECT COUNT(*) FROM Appointments WHERE Time = ? AND Vaccine = ?",
+                    date, vaccine);
+            int distinctCaregivers = queryInt(con,
+                    "SELECT COUNT(DISTINCT CaregiverName) FROM Appointments WHERE Time = ? AND Vaccine = ?", date, vaccine);
+            int left = VaccineInventory.getInstance().isWriteBehind() ? VaccineInventory.getInstance().getDoses(vaccine) :
+                    queryInt(con, "SELECT Doses FROM Vaccines WHERE Name = ?", null, vaccine);
+            boolean ok = appointments == booked.get() && appointments == doses && left == 0
+                    && distinctCaregivers == appointments;
+            System.out.println("Contention check (" + threads + " threads): booked=" + booked.get() + " refused=" +
+                    refused.get() + " appointments=" + appointments + " doses left=" + left + " -> " +
+                    (ok ? "OK" : "OVERSOLD OR LOST BOOKINGS"));
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private void prepareContention(BenchmarkData data, Date date, String vaccine, int doses) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try {
+            try (PreparedStatement statement = con.prepareStatement("DELETE FROM Appointments WHERE Time = ?")) {
+                statement.setDate(1, date);
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = con.prepareStatement("DELETE FROM Availabilities WHERE Time = ?")) {
+                statement.setDate(1, date);
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = con.prepareStatement("DELETE FROM Vaccines WHERE Name = ?")) {
+                statement.setString(1, vaccine);
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = con.prepareStatement("INSERT INTO Availabilities VALUES (?, ?)")) {
+                for (int c = 0; c < data.getCaregivers(); c++) {
+                    statement.setDate(1, date);
+                    statement.setString(2, BenchmarkData.caregiverName(c));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        } finally {
+            cm.closeConnection();
+        }
+        new Vaccine.VaccineBuilder(vaccine, doses).build().saveToDB();
+        AvailabilityIndex.getInstance().invalidate(date);
+    }
+
+    // AppointmentID -> PatientName
+    private static List<Map.Entry<Integer, String>> appointments() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        List<Map.Entry<Integer, String>> appointments = new ArrayList<>();
+        try (PreparedStatement statement = con.prepareStatement(
+                "SELECT AppointmentID, PatientName FROM Appointments");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                appointments.add(new AbstractMap.SimpleImmutableEntry<>(resultSet.getInt(1), resultSet.getString(2)));
+            }
+        } finally {
+            cm.closeConnection();
+        }
+        return appointments;
+    }
+
+    private static int queryInt(Connection con, String sql, Date date, String name) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(sql)) {
+            int index = 1;
+            if (date != null) {
+                statement.setDate(index++, date);
+            }
+            statement.setString(index, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : -1;
+            }
+        }
+    }
+
+    private static int random(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    // Runs the operation on all threads for the warm-up period, then for the measurement period
+    public void measure(String name, int size, int threads, Operation operation) throws InterruptedException {
+        run(threads, warmupMillis, Long.MAX_VALUE, operation, null, new AtomicLong());
+        long[][] samples = new long[threads][];
+        AtomicLong errors = new AtomicLong();
+        long ops = run(threads, measureMillis, Long.MAX_VALUE, operation, samples, errors);
+        report(name, size, threads, ops, measureMillis * 1_000_000L, samples, errors.get());
+    }
+
+    // Runs the operation exactly count times across all threads, without warm-up
+    public void measureCount(String name, int size, int threads, long count, Operation operation)
+            throws InterruptedException {
+        long[][] samples = new long[threads][];
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long ops = run(threads, Long.MAX_VALUE / 2, count, operation, samples, errors);
+        report(name, size, threads, ops, System.nanoTime() - start, samples, errors.get());
+    }
+
+    private long run(int threads, long millis, long maxOps, Operation operation, long[][] samples, AtomicLong errors)
+            throws InterruptedException {
+        AtomicLong tickets = new AtomicLong();
+        LongAdder completed = new LongAdder();
+        CountDownLatch startGate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                long[] local = new long[1024];
+                int n = 0;
+                try {
+                    startGate.await();
+                    while (System.nanoTime() < deadline[0] && tickets.getAndIncrement() < maxOps) {
+                        long begin = System.nanoTime();
+                        try {
+                            operation.run(thread);
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        completed.increment();
+                        if (samples != null && n < MAX_SAMPLES) {
+                            if (n == local.length) {
+                                local = Arrays.copyOf(local, Math.min(local.length * 2, MAX_SAMPLES));
+                            }
+                            local[n++] = System.nanoTime() - begin;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (samples != null) {
+                        samples[thread] = Arrays.copyOf(local, n);
+                    }
+                    done.countDown();
+                }
+            }, "benchmark-" + t);
+            worker.start();
+        }
+        deadline[0] = System.nanoTime() + millis * 1_000_000L;
+        startGate.countDown();
+        done.await();
+        return completed.sum();
+    }
+
+    private void report(String name, int size, int threads, long ops, long elapsedNanos, long[][] samples,
+                        long errors) {
+        long[] all = Arrays.stream(samples).flatMapToLong(Arrays::stream).sorted().toArray();
+        String line = String.format("%-30s %9d %7d %10d %12.1f %10.1f %10.1f %7d", name, size, threads, ops,
+                ops / (elapsedNanos / 1e9), percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, errors);
+        System.out.println(line);
+        results.add(line);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,32 @@
+package scheduler.bulk;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Portable RowWriter: one JDBC batch of the table's INSERT per call.
+ */
+class BatchInsertWriter implements RowWriter {
+    private final BulkTable table;
+    private final Connection con;
+
+    BatchInsertWriter(BulkTable table, Connection con) {
+        this.table = table;
+        this.con = con;
+    }
+
+    @Override
+    public void write(List<Object[]> rows) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(table.getInsertSql())) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i], table.getColumn(i).getSqlType());
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+}
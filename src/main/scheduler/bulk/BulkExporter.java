@@ -0,0 +1,77 @@
+package scheduler.bulk;
+
+import scheduler.db.ConnectionManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HexFormat;
+
+/**
+ * Streams a whole table to a CSV file with a header row, in primary key order. Rows go straight from the
+ * result set into a buffered writer on the file channel, nothing is collected in memory. Salts and hashes are
+ * written as hex so the file can be imported again.
+ */
+public class BulkExporter {
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Returns the number of rows exported
+    public long exportCsv(BulkTable table, Path file) throws IOException, SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        HexFormat hex = HexFormat.of();
+        long exported = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+             PreparedStatement statement = con.prepareStatement(table.getExportSql())) {
+            Csv.write(writer, table.getHeader());
+            statement.setFetchSize(FETCH_SIZE);
+            int offset = table.exportsId() ? 1 : 0;
+            int columns = table.getColumnCount() + offset;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    for (int i = 0; i < columns; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        int sqlType = i < offset ? Types.INTEGER : table.getColumn(i - offset).getSqlType();
+                        switch (sqlType) {
+                            case Types.BINARY:
+                                writer.write(hex.formatHex(resultSet.getBytes(i + 1)));
+                                break;
+                            case Types.DATE:
+                                writer.write(resultSet.getDate(i + 1).toString());
+                                break;
+                            case Types.INTEGER:
+                                writer.write(Integer.toString(resultSet.getInt(i + 1)));
+                                break;
+                            default:
+                                Csv.writeField(writer, resultSet.getString(i + 1));
+                        }
+                    }
+                    writer.write('\n');
+                    exported++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Export stopped after " + exported + " rows: " + e.getMessage(),
+                    e.getSQLState(), e);
+        } finally {
+            cm.closeConnection();
+        }
+        return exported;
+    }
+}
@@ -0,0 +1,190 @@
+package scheduler.bulk;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.UsernameIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.util.HashingService;
+import scheduler.waitlist.Waitlist;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Streams a CSV file into one table, batchSize rows per transaction.
+ *
+ * Account rows are either username,password (the password is hashed on the HashingService pool, so a batch
+ * hashes on all cores while the file keeps being read) or username,salt,hash in hex as written by
+ * BulkExporter. With the mssql-jdbc driver each batch goes through SQLServerBulkCopy, on any other JDBC
+ * backend through a batched INSERT. Batches that were committed before a failure stay committed; the
+ * error says how far the import got.
+ */
+public class BulkImporter {
+    private static final String BULK_COPY_CONNECTION = "com.microsoft.sqlserver.jdbc.SQLServerConnection";
+
+    private final int batchSize;
+
+    public BulkImporter(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    // Returns the number of rows imported
+    public long importCsv(BulkTable table, Path file) throws IOException, SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        long imported = 0;
+        long lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            RowWriter writer = openWriter(table, con);
+            List<CompletableFuture<Object[]>> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = Csv.parse(line);
+                if (lineNumber == 1 && fields[0].equalsIgnoreCase(table.getHeader()[0])) {
+                    continue;
+                }
+                batch.add(parse(table, fields, lineNumber));
+                if (batch.size() == batchSize) {
+                    imported += writeBatch(cm, writer, batch, lineNumber);
+                    batch.clear();
+                }
+            }
+            imported += writeBatch(cm, writer, batch, lineNumber);
+        } catch (SQLException e) {
+            throw new SQLException("Import stopped near line " + lineNumber + " after " + imported +
+                    " rows: " + e.getMessage(), e.getSQLState(), e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Import stopped after " + imported + " rows: " + e.getMessage(), e);
+        } finally {
+            cm.closeConnection();
+            refreshCaches(table);
+        }
+        return imported;
+    }
+
+    private RowWriter openWriter(BulkTable table, Connection con) throws SQLException {
+        try {
+            Class<?> bulkCopyConnection = Class.forName(BULK_COPY_CONNECTION);
+            if (con.isWrapperFor(bulkCopyConnection)) {
+                return new SqlServerBulkWriter(table, con);
+            }
+        } catch (ClassNotFoundException e) {
+            // mssql-jdbc isn't on the classpath
+        }
+        return new BatchInsertWriter(table, con);
+    }
+
+    private static int writeBatch(ConnectionManager cm, RowWriter writer, List<CompletableFuture<Object[]>> batch,
+                                  long lineNumber) throws SQLException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        try {
+            for (CompletableFuture<Object[]> row : batch) {
+                rows.add(row.join());
+            }
+        } catch (CompletionException e) {
+            throw new IllegalArgumentException("Could not hash a password before line " + lineNumber, e.getCause());
+        }
+        cm.beginTransaction();
+        try {
+            writer.write(rows);
+            cm.commit();
+        } catch (SQLException e) {
+            cm.rollback();
+            throw e;
+        }
+        return rows.size();
+    }
+
+    // Throws IllegalArgumentException naming the line if the fields don't fit the table
+    private static CompletableFuture<Object[]> parse(BulkTable table, String[] fields, long lineNumber) {
+        try {
+            switch (table) {
+                case CAREGIVERS:
+                case PATIENTS:
+                    return parseAccount(fields);
+                case AVAILABILITIES:
+                    expect(fields, 2);
+                    return CompletableFuture.completedFuture(new Object[]{Date.valueOf(fields[0].trim()),
+                            fields[1].trim()});
+                case VACCINES:
+                    expect(fields, 2);
+                    int doses = Integer.parseInt(fields[1].trim());
+                    if (doses < 0) {
+                        throw new IllegalArgumentException("negative doses");
+                    }
+                    return CompletableFuture.completedFuture(new Object[]{fields[0].trim(), doses});
+                case APPOINTMENTS:
+                    // an exported file starts with the old AppointmentID, which is not kept
+                    int offset = fields.length == 5 ? 1 : 0;
+                    expect(fields, 4 + offset);
+                    return CompletableFuture.completedFuture(new Object[]{fields[offset].trim(),
+                            fields[offset + 1].trim(), Date.valueOf(fields[offset + 2].trim()),
+                            fields[offset + 3].trim()});
+                default:
+                    throw new IllegalStateException();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static CompletableFuture<Object[]> parseAccount(String[] fields) {
+        String username = fields[0].trim();
+        if (fields.length == 3) {
+            HexFormat hex = HexFormat.of();
+            return CompletableFuture.completedFuture(new Object[]{username, hex.parseHex(fields[1].trim()),
+                    hex.parseHex(fields[2].trim())});
+        }
+        expect(fields, 2);
+        HashingService hashing = HashingService.getInstance();
+        byte[] salt = hashing.generateSalt();
+        return hashing.hashAsync(fields[1].toCharArray(), salt).thenApply(hash -> new Object[]{username, salt, hash});
+    }
+
+    private static void expect(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException("expected " + count + " fields but found " + fields.length);
+        }
+    }
+
+    // The caches only see this process's own writes through the model classes, reload what the import touched
+    private static void refreshCaches(BulkTable table) {
+        try {
+            if (table == BulkTable.AVAILABILITIES) {
+                AvailabilityIndex.getInstance().refresh();
+                Waitlist.getInstance().signalAll();
+            } else if (table == BulkTable.VACCINES) {
+                VaccineInventory.getInstance().reconcile();
+                Waitlist.getInstance().signalAll();
+            } else if (table == BulkTable.PATIENTS) {
+                UsernameIndex.forPatients().refresh();
+            } else if (table == BulkTable.CAREGIVERS) {
+                UsernameIndex.forCaregivers().refresh();
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not reload the cache after importing " + table.getTableName());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package scheduler.bulk;
+
+import scheduler.db.Queries;
+
+import java.sql.Types;
+
+/**
+ * The tables that can be imported and exported, with the columns a CSV row maps to (in insert order).
+ * Appointments are exported with their AppointmentID first; on import the id column is optional and ignored
+ * since the database assigns new ids.
+ */
+public enum BulkTable {
+    CAREGIVERS("Caregivers", Queries.INSERT_CAREGIVER, Queries.EXPORT_CAREGIVERS, false,
+            new Column("Username", Types.VARCHAR, 255),
+            new Column("Salt", Types.BINARY, 16),
+            new Column("Hash", Types.BINARY, 16)),
+    PATIENTS("Patients", Queries.INSERT_PATIENT, Queries.EXPORT_PATIENTS, false,
+            new Column("Username", Types.VARCHAR, 255),
+            new Column("Salt", Types.BINARY, 16),
+            new Column("Hash", Types.BINARY, 16)),
+    AVAILABILITIES("Availabilities", Queries.INSERT_AVAILABILITY, Queries.EXPORT_AVAILABILITIES, false,
+            new Column("Time", Types.DATE, 10),
+            new Column("Username", Types.VARCHAR, 255)),
+    VACCINES("Vaccines", Queries.INSERT_VACCINE, Queries.EXPORT_VACCINES, false,
+            new Column("Name", Types.VARCHAR, 255),
+            new Column("Doses", Types.INTEGER, 10)),
+    APPOINTMENTS("Appointments", Queries.INSERT_APPOINTMENT, Queries.EXPORT_APPOINTMENTS, true,
+            new Column("CaregiverName", Types.VARCHAR, 255),
+            new Column("PatientName", Types.VARCHAR, 255),
+            new Column("Time", Types.DATE, 10),
+            new Column("Vaccine", Types.VARCHAR, 255));
+
+    private final String tableName;
+    private final String insertSql;
+    private final String exportSql;
+    private final boolean exportsId;
+    private final Column[] columns;
+
+    BulkTable(String tableName, String insertSql, String exportSql, boolean exportsId, Column... columns) {
+        this.tableName = tableName;
+        this.insertSql = insertSql;
+        this.exportSql = exportSql;
+        this.exportsId = exportsId;
+        this.columns = columns;
+    }
+
+    // Returns the table for a command argument such as "caregivers", or null
+    public static BulkTable fromName(String name) {
+        for (BulkTable table : values()) {
+            if (table.tableName.equalsIgnoreCase(name)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    // Getters
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getInsertSql() {
+        return insertSql;
+    }
+
+    public String getExportSql() {
+        return exportSql;
+    }
+
+    public boolean exportsId() {
+        return exportsId;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    // True for accounts, whose CSV rows may carry a plain password instead of salt and hash
+    public boolean hasPasswords() {
+        return this == CAREGIVERS || this == PATIENTS;
+    }
+
+    public String[] getHeader() {
+        int offset = exportsId ? 1 : 0;
+        String[] header = new String[columns.length + offset];
+        if (exportsId) {
+            header[0] = "AppointmentID";
+        }
+        for (int i = 0; i < columns.length; i++) {
+            header[i + offset] = columns[i].name;
+        }
+        return header;
+    }
+
+    public static class Column {
+        private final String name;
+        private final int sqlType;
+        private final int precision;
+
+        private Column(String name, int sqlType, int precision) {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.precision = precision;
+        }
+
+        // Getters
+        public String getName() {
+            return name;
+        }
+
+        public int getSqlType() {
+            return sqlType;
+        }
+
+        public int getPrecision() {
+            return precision;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package scheduler.bulk;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Writes one batch of parsed rows, in BulkTable column order, inside the caller's transaction.
+ */
+interface RowWriter {
+    void write(List<Object[]> rows) throws SQLException;
+}
@@ -0,0 +1,104 @@
+package scheduler.bulk;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * RowWriter that streams each batch through SQLServerBulkCopy (the TDS bulk load protocol) instead of
+ * individual INSERTs. Only loaded when the mssql-jdbc driver is on the classpath and the connection is a
+ * SQL Server one, see BulkImporter.
+ */
+class SqlServerBulkWriter implements RowWriter {
+    private final BulkTable table;
+    private final SQLServerConnection con;
+
+    SqlServerBulkWriter(BulkTable table, Connection con) throws SQLException {
+        this.table = table;
+        // the bulk copy API needs the driver's own connection, not the pool's proxy
+        this.con = con.unwrap(SQLServerConnection.class);
+    }
+
+    @Override
+    public void write(List<Object[]> rows) throws SQLException {
+        SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+        // join the importer's transaction instead of committing every bulk copy batch on its own
+        options.setUseInternalTransaction(false);
+        // keep the foreign keys trusted
+        options.setCheckConstraints(true);
+        options.setBatchSize(rows.size());
+        options.setBulkCopyTimeout(0);
+        try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(con)) {
+            bulkCopy.setBulkCopyOptions(options);
+            bulkCopy.setDestinationTableName(table.getTableName());
+            for (int i = 0; i < table.getColumnCount(); i++) {
+                bulkCopy.addColumnMapping(i + 1, table.getColumn(i).getName());
+            }
+            bulkCopy.writeToServer(new Rows(table, rows));
+        }
+    }
+
+    private static class Rows implements ISQLServerBulkData {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BulkTable table;
+        private final transient Iterator<Object[]> iterator;
+        private transient Object[] current;
+
+        private Rows(BulkTable table, List<Object[]> rows) {
+            this.table = table;
+            this.iterator = rows.iterator();
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            Set<Integer> ordinals = new HashSet<>();
+            for (int i = 1; i <= table.getColumnCount(); i++) {
+                ordinals.add(i);
+            }
+            return ordinals;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return table.getColumn(column - 1).getName();
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return table.getColumn(column - 1).getSqlType();
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return table.getColumn(column - 1).getPrecision();
+        }
+
+        @Override
+        public int getScale(int column) {
+            return 0;
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return current;
+        }
+
+        @Override
+        public boolean next() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+    }
+}
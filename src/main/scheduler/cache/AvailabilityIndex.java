@@ -0,0 +1,130 @@
+package scheduler.cache;
+
+import scheduler.store.Stores;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory copy of the AvailabilityStore: date -> caregivers available that day, sorted by username.
+ *
+ * The index is loaded at startup and kept coherent by this process's own writes (upload, reserve, cancel).
+ * A date that is not in the index is loaded from the store on first lookup; invalidate() and refresh()
+ * drop or reload entries that other processes may have changed.
+ */
+public class AvailabilityIndex {
+    private static final AvailabilityIndex INSTANCE = new AvailabilityIndex();
+
+    private final ConcurrentHashMap<LocalDate, ConcurrentSkipListSet<String>> byDate = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private ScheduledExecutorService refresher = null;
+
+    private AvailabilityIndex() {
+    }
+
+    public static AvailabilityIndex getInstance() {
+        return INSTANCE;
+    }
+
+    // Getters
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getDateCount() {
+        return byDate.size();
+    }
+
+    // Replaces the whole index with the current contents of the AvailabilityStore
+    public void refresh() throws SQLException {
+        Map<LocalDate, ConcurrentSkipListSet<String>> loaded = new HashMap<>();
+        Stores.availabilities().getAll().forEach((day, caregivers) ->
+                loaded.put(day, new ConcurrentSkipListSet<>(caregivers)));
+        byDate.keySet().retainAll(loaded.keySet());
+        byDate.putAll(loaded);
+    }
+
+    // Reloads the whole index every periodMillis, for deployments where other processes also write availabilities
+    public synchronized void startPeriodicRefresh(long periodMillis) {
+        if (refresher != null || periodMillis <= 0) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "availability-index-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException e) {
+                System.out.println("Could not refresh availability index");
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the caregivers available on the given date, sorted by username
+    public NavigableSet<String> getCaregivers(Date date) throws SQLException {
+        LocalDate day = date.toLocalDate();
+        ConcurrentSkipListSet<String> caregivers = byDate.get(day);
+        if (caregivers != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            // load before publishing so concurrent readers never see a half-filled day
+            ConcurrentSkipListSet<String> loaded = new ConcurrentSkipListSet<>(
+                    Stores.availabilities().getCaregivers(date));
+            caregivers = byDate.putIfAbsent(day, loaded);
+            if (caregivers == null) {
+                caregivers = loaded;
+            } else {
+                caregivers.addAll(loaded);
+            }
+        }
+        return Collections.unmodifiableNavigableSet(caregivers);
+    }
+
+    public void add(Date date, String caregiver) {
+        byDate.computeIfAbsent(date.toLocalDate(), d -> new ConcurrentSkipListSet<>()).add(caregiver);
+    }
+
+    public void remove(Date date, String caregiver) {
+        ConcurrentSkipListSet<String> caregivers = byDate.get(date.toLocalDate());
+        if (caregivers != null) {
+            caregivers.remove(caregiver);
+        }
+    }
+
+    // Replaces one date with caregivers just read from the store, e.g. inside a reservation's transaction
+    public NavigableSet<String> replace(Date date, Collection<String> caregivers) {
+        ConcurrentSkipListSet<String> loaded = new ConcurrentSkipListSet<>(caregivers);
+        byDate.put(date.toLocalDate(), loaded);
+        return Collections.unmodifiableNavigableSet(loaded);
+    }
+
+    // Forgets a date so the next lookup goes back to the database
+    public void invalidate(Date date) {
+        byDate.remove(date.toLocalDate());
+    }
+
+    public void invalidateAll() {
+        byDate.clear();
+    }
+}
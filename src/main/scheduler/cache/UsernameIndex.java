@@ -0,0 +1,190 @@
+package scheduler.cache;
+
+import scheduler.store.Stores;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers "is this username taken" for the create_* commands without a database round trip in the common case.
+ *
+ * A Bloom filter holds every username of the table, built at startup by streaming the usernames and kept up to
+ * date by saveToDB. A name the filter has never seen is free and skips the store; only possible positives are
+ * checked against the primary key. Names created by this process are also kept in a small exact set, so a retried
+ * sign-up is refused without a lookup either. Filter keys are lower-cased because the SQL Server collation
+ * ignores case; that only adds false positives, which the store lookup settles.
+ *
+ * Until the first refresh() has finished every check goes to the store.
+ */
+public class UsernameIndex {
+    private static final long CAPACITY = longEnv("UsernameFilterCapacity", 100_000);
+    private static final double FALSE_POSITIVE_RATE = doubleEnv("UsernameFilterFpp", 0.01);
+    private static final int RECENT_SIZE = (int) longEnv("UsernameRecentSize", 1024);
+
+    private static final UsernameIndex PATIENTS = new UsernameIndex(true);
+    private static final UsernameIndex CAREGIVERS = new UsernameIndex(false);
+
+    private final boolean patients;
+    private volatile BloomFilter filter = null;
+    // set while refresh() builds a new filter, so names saved meanwhile land in both
+    private volatile BloomFilter building = null;
+    private final Set<String> recent = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<String> recentOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger recentCount = new AtomicInteger();
+    private final LongAdder recentHits = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final AtomicLong loadedNames = new AtomicLong();
+
+    private UsernameIndex(boolean patients) {
+        this.patients = patients;
+    }
+
+    public static UsernameIndex forPatients() {
+        return PATIENTS;
+    }
+
+    public static UsernameIndex forCaregivers() {
+        return CAREGIVERS;
+    }
+
+    // Getters
+    public boolean isLoaded() {
+        return filter != null;
+    }
+
+    // checks answered by the recent set, by a filter negative, and by the store; falsePositives are store
+    // lookups that found the name free
+    public long getRecentHits() {
+        return recentHits.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    // The current filter's estimated false-positive rate and size, 0 before the first refresh
+    public double getFalsePositiveRate() {
+        BloomFilter current = filter;
+        return current == null ? 0 : current.getFalsePositiveRate();
+    }
+
+    public long getMemoryBytes() {
+        BloomFilter current = filter;
+        return current == null ? 0 : current.getMemoryBytes();
+    }
+
+    public long getNames() {
+        BloomFilter current = filter;
+        return current == null ? 0 : current.getInsertions();
+    }
+
+    // Rebuilds the filter from the store. If the table has outgrown the configured capacity it is streamed a
+    // second time into a filter sized for twice as many names.
+    public synchronized void refresh() throws SQLException {
+        long capacity = Math.max(CAPACITY, 2 * loadedNames.get());
+        BloomFilter loaded = load(capacity);
+        if (loaded.getInsertions() > capacity) {
+            loaded = load(2 * loaded.getInsertions());
+        }
+        loadedNames.set(loaded.getInsertions());
+        filter = loaded;
+        building = null;
+    }
+
+    private BloomFilter load(long capacity) throws SQLException {
+        BloomFilter loaded = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+        building = loaded;
+        try {
+            if (patients) {
+                Stores.patients().forEachUsername(username -> loaded.put(key(username)));
+            } else {
+                Stores.caregivers().forEachUsername(username -> loaded.put(key(username)));
+            }
+        } catch (SQLException e) {
+            building = null;
+            throw e;
+        }
+        return loaded;
+    }
+
+    public boolean exists(String username) throws SQLException {
+        if (recent.contains(username)) {
+            recentHits.increment();
+            return true;
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(key(username))) {
+            skipped.increment();
+            return false;
+        }
+        lookups.increment();
+        boolean exists = patients ? Stores.patients().exists(username) : Stores.caregivers().exists(username);
+        if (!exists && current != null) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    // Called once the username has been stored
+    public void added(String username) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(key(username));
+        }
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(key(username));
+        }
+        if (recent.add(username)) {
+            recentOrder.add(username);
+            // keep the set small, oldest names go first
+            if (recentCount.incrementAndGet() > RECENT_SIZE) {
+                String oldest = recentOrder.poll();
+                if (oldest != null) {
+                    recent.remove(oldest);
+                    recentCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private static long longEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    private static double doubleEnv(String name, double defaultValue) {
+        String value = System.getenv(name);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+}
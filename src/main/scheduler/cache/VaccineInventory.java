@@ -0,0 +1,291 @@
+package scheduler.cache;
+
+import scheduler.journal.ReservationJournal;
+import scheduler.model.Vaccine;
+import scheduler.store.Stores;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process dose counts keyed by vaccine name.
+ *
+ * In SYNC mode the Vaccines table stays the source of truth: every change is written to the database first
+ * and the counters only mirror it. They are read again from the VaccineStore once they are older than
+ * DoseCacheTtlMs (default 5000, 0 never), so doses changed by another process show up. In WRITE_BEHIND mode
+ * the counters are authoritative for this process, reservations only touch memory, and a background task
+ * flushes the accumulated per-vaccine deltas to the Vaccines table in one batch. With the reservation journal
+ * enabled, each flush also marks the journal records whose deltas it wrote as durable, so a crash between two
+ * flushes loses no dose changes. In both modes a vaccine this process doesn't know yet is looked up in the
+ * VaccineStore.
+ */
+public class VaccineInventory {
+    public enum DurabilityMode {
+        SYNC,
+        WRITE_BEHIND
+    }
+
+    private static final VaccineInventory INSTANCE = new VaccineInventory();
+    private static final long TTL_MILLIS = intEnv("DoseCacheTtlMs", 5_000);
+
+    private final ConcurrentHashMap<String, AtomicInteger> doses = new ConcurrentHashMap<>();
+    // changes made in memory that have not been written to the Vaccines table yet (WRITE_BEHIND only)
+    private final ConcurrentHashMap<String, AtomicInteger> pendingDeltas = new ConcurrentHashMap<>();
+    // journal records whose deltas are waiting for a flush (WRITE_BEHIND with the journal enabled)
+    private final ConcurrentLinkedQueue<Long> pendingDecrements = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> pendingIncrements = new ConcurrentLinkedQueue<>();
+    private volatile DurabilityMode mode = DurabilityMode.SYNC;
+    private ScheduledExecutorService flusher = null;
+    // when the counts were last read from the VaccineStore, and whether a caller is reading them right now
+    private volatile long loadedAt = 0;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    private VaccineInventory() {
+    }
+
+    public static VaccineInventory getInstance() {
+        return INSTANCE;
+    }
+
+    // Getters
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    public boolean isWriteBehind() {
+        return mode == DurabilityMode.WRITE_BEHIND;
+    }
+
+    public synchronized void configure(DurabilityMode mode, long flushIntervalMillis) {
+        this.mode = mode;
+        if (mode == DurabilityMode.WRITE_BEHIND && flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "vaccine-inventory-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (SQLException e) {
+                    System.out.println("Could not flush vaccine doses, will retry: " + e.getMessage());
+                }
+            }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            // don't lose buffered deltas when the JVM exits without going through quit
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "vaccine-inventory-shutdown"));
+        }
+    }
+
+    // Loads the dose counts from the VaccineStore, keeping any deltas that have not been flushed yet
+    public void reconcile() throws SQLException {
+        flush();
+        long start = System.currentTimeMillis();
+        Stores.vaccines().getAll().forEach((name, stored) -> {
+            AtomicInteger pending = pendingDeltas.get(name);
+            int value = stored + (pending == null ? 0 : pending.get());
+            doses.computeIfAbsent(name, n -> new AtomicInteger()).set(value);
+        });
+        loadedAt = start;
+    }
+
+    // SYNC only: reloads the counts once they are older than the TTL. One caller reloads, the others keep
+    // answering from the current counts. A reservation that commits while the counts are read may be off by
+    // one in either direction until the next reload.
+    private void refreshIfStale() {
+        if (mode != DurabilityMode.SYNC || TTL_MILLIS <= 0 ||
+                System.currentTimeMillis() - loadedAt < TTL_MILLIS || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Stores.vaccines().getAll().forEach((name, stored) ->
+                    doses.computeIfAbsent(name, n -> new AtomicInteger()).set(stored));
+        } catch (SQLException e) {
+            System.out.println("Could not refresh vaccine doses: " + e.getMessage());
+        } finally {
+            // after a failure the next try waits for another TTL as well
+            loadedAt = start;
+            refreshing.set(false);
+        }
+    }
+
+    public boolean contains(String vaccineName) {
+        return getDoses(vaccineName) >= 0;
+    }
+
+    // Returns the available doses, or -1 if the vaccine is unknown
+    public int getDoses(String vaccineName) {
+        refreshIfStale();
+        AtomicInteger count = counter(vaccineName);
+        return count == null ? -1 : count.get();
+    }
+
+    // The vaccine's counter, read from the VaccineStore if it was created by another process since the counts
+    // were loaded. Returns null if the vaccine doesn't exist or can't be looked up.
+    private AtomicInteger counter(String vaccineName) {
+        AtomicInteger count = doses.get(vaccineName);
+        if (count != null) {
+            return count;
+        }
+        try {
+            Vaccine stored = Stores.vaccines().get(vaccineName);
+            if (stored == null) {
+                return null;
+            }
+            return doses.computeIfAbsent(vaccineName, n -> new AtomicInteger(stored.getAvailableDoses()));
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    // All vaccines with their available doses, sorted by name
+    public Map<String, Integer> snapshot() {
+        refreshIfStale();
+        Map<String, Integer> result = new TreeMap<>();
+        doses.forEach((name, count) -> result.put(name, count.get()));
+        return result;
+    }
+
+    // Registers a vaccine that was just inserted into the Vaccines table
+    public void created(String vaccineName, int availableDoses) {
+        doses.computeIfAbsent(vaccineName, n -> new AtomicInteger()).set(availableDoses);
+    }
+
+    // Takes num doses if that many are available; never lets the count go below zero
+    public boolean tryReserve(String vaccineName, int num) {
+        AtomicInteger count = counter(vaccineName);
+        if (count == null) {
+            return false;
+        }
+        int current;
+        do {
+            current = count.get();
+            if (current < num) {
+                return false;
+            }
+        } while (!count.compareAndSet(current, current - num));
+        recordDelta(vaccineName, -num);
+        return true;
+    }
+
+    // Gives num doses back, e.g. on cancel or when a reservation rolls back
+    public void release(String vaccineName, int num) {
+        doses.computeIfAbsent(vaccineName, n -> new AtomicInteger()).addAndGet(num);
+        recordDelta(vaccineName, num);
+    }
+
+    // Mirrors a change that has already been written to the database (SYNC mode)
+    public void applied(String vaccineName, int delta) {
+        AtomicInteger count = doses.get(vaccineName);
+        if (count != null) {
+            count.addAndGet(delta);
+        }
+    }
+
+    // Call after the decrement has been taken with tryReserve
+    public void trackDecrement(long journalSeq) {
+        if (journalSeq != 0) {
+            pendingDecrements.add(journalSeq);
+        }
+    }
+
+    // Call before the increment is made with release
+    public void trackIncrement(long journalSeq) {
+        if (journalSeq != 0) {
+            pendingIncrements.add(journalSeq);
+        }
+    }
+
+    private void recordDelta(String vaccineName, int delta) {
+        if (mode == DurabilityMode.WRITE_BEHIND) {
+            pendingDeltas.computeIfAbsent(vaccineName, n -> new AtomicInteger()).addAndGet(delta);
+        }
+    }
+
+    // Writes all pending deltas to the VaccineStore in a single batch.
+    //
+    // A journaled change must never be marked durable unless its delta is in the batch, and an increment must
+    // not be left incomplete once it is in the Vaccines table (recovery would add it twice). Decrements are
+    // tracked after their delta is recorded, so the ones drained before the snapshot are all in it; they are
+    // marked after the commit, and replaying one that was actually written only loses a dose. Increments are
+    // tracked before their delta is recorded, so the ones drained after the snapshot include every increment
+    // in it; they are marked before the commit, and one marked too early is at worst a dose not given back.
+    public synchronized void flush() throws SQLException {
+        List<Long> decrements = drain(pendingDecrements);
+        Map<String, Integer> batch = new TreeMap<>();
+        pendingDeltas.forEach((name, delta) -> {
+            int value = delta.getAndSet(0);
+            if (value != 0) {
+                batch.put(name, value);
+            }
+        });
+        List<Long> increments = drain(pendingIncrements);
+        ReservationJournal journal = ReservationJournal.getInstance();
+        if (batch.isEmpty()) {
+            // the tracked changes cancelled each other out, there is nothing left to write for them
+            journal.doseDurable(increments);
+            journal.doseDurable(decrements);
+            return;
+        }
+
+        boolean committed = false;
+        try {
+            journal.doseDurable(increments);
+            Stores.vaccines().applyDeltas(batch);
+            committed = true;
+            journal.doseDurable(decrements);
+        } catch (SQLException e) {
+            if (!committed) {
+                // put the deltas back so the next flush retries them
+                batch.forEach(this::recordDelta);
+                pendingDecrements.addAll(decrements);
+            }
+            throw new SQLException("Could not flush vaccine doses: " + e.getMessage(), e.getSQLState(), e);
+        }
+    }
+
+    private static List<Long> drain(ConcurrentLinkedQueue<Long> queue) {
+        List<Long> seqs = new ArrayList<>();
+        Long seq;
+        while ((seq = queue.poll()) != null) {
+            seqs.add(seq);
+        }
+        return seqs;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    // Stops the background flusher and writes whatever is still pending
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.out.println("Could not flush vaccine doses on shutdown");
+        }
+    }
+}
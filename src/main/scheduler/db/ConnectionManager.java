@@ -1,37 +1,328 @@
 package scheduler.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ConnectionManager {
 
-    private final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
-    private final String connectionUrl = "jdbc:sqlserver://" + System.getenv("Server") +
-            ".database.windows.net:1433;database=" + System.getenv("DBName");
-    private final String userName = System.getenv("UserID");
-    private final String userPass = System.getenv("Password");
+    private static final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
+    // JdbcUrl overrides the Azure SQL url, e.g. to point the pool at an embedded database
+    private static final String connectionUrl = System.getenv("JdbcUrl") != null ? System.getenv("JdbcUrl") :
+            "jdbc:sqlserver://" + System.getenv("Server") +
+            ".database.windows.net:1433;database=" + System.getenv("DBName") +
+            // let the driver reuse server-side prepared statement handles on a pooled connection
+            ";disableStatementPooling=false;statementPoolingCacheSize=64";
+    private static final String userName = System.getenv("UserID");
+    private static final String userPass = System.getenv("Password");
+    // ReadJdbcUrl names a second database for reads; ReadReplica=true uses SQL Server's read-only routing instead
+    private static final String readConnectionUrl = System.getenv("ReadJdbcUrl") != null ?
+            System.getenv("ReadJdbcUrl") : Boolean.parseBoolean(System.getenv("ReadReplica")) ?
+            connectionUrl + ";applicationIntent=ReadOnly" : null;
+    // how long a session keeps reading from the primary after it wrote, 0 turns read-your-writes off
+    private static final long stickyMillis = intEnv("ReplicaStickyMs", 5_000);
+    // how long reads stay on the primary after the replica could not be reached
+    private static final long retryMillis = intEnv("ReplicaRetryMs", 30_000);
+
+    // every ConnectionManager borrows from the same process-wide pool
+    private static volatile ConnectionPool pool = null;
+    // reads go here when it is set and healthy, see createReadConnection()
+    private static volatile ConnectionPool readPool = null;
+    private static volatile boolean readPoolCreated = false;
+    private static volatile long replicaDownUntil = 0;
+    private static final LongAdder replicaReads = new LongAdder();
+    private static final LongAdder stickyReads = new LongAdder();
+    private static final LongAdder fallbackReads = new LongAdder();
+
+    // a connection pinned to the current thread is handed out by every createConnection() on that thread
+    private static final ThreadLocal<Connection> pinned = new ThreadLocal<>();
+    // when the session running on this thread last wrote to the primary, see bindLastWrite() and recordWrite()
+    private static final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[1]);
 
     private Connection con = null;
+    // true if beginTransaction() switched auto-commit off, false if it joined an enclosing transaction
+    private boolean ownsTransaction = false;
+    private Savepoint savepoint = null;
 
     public ConnectionManager() {
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (ConnectionManager.class) {
+                if (pool == null) {
+                    pool = createDefaultPool();
+                }
+                p = pool;
+            }
+        }
+        return p;
+    }
+
+    // Replaces the process-wide pool, closing the previous one
+    public static synchronized void setPool(ConnectionPool newPool) {
+        ConnectionPool old = pool;
+        pool = newPool;
+        if (old != null && old != newPool) {
+            old.close();
+        }
+    }
+
+    // The read pool, or null if no replica is configured
+    public static ConnectionPool getReadPool() {
+        if (!readPoolCreated) {
+            synchronized (ConnectionManager.class) {
+                if (!readPoolCreated) {
+                    readPool = readConnectionUrl == null ? null : createPool(readConnectionUrl,
+                            intEnv("ReadPoolMaxSize", intEnv("PoolMaxSize", 10)));
+                    readPoolCreated = true;
+                }
+            }
+        }
+        return readPool;
+    }
+
+    // Replaces the read pool, closing the previous one; null sends every read to the primary
+    public static synchronized void setReadPool(ConnectionPool newPool) {
+        ConnectionPool old = readPool;
+        readPool = newPool;
+        readPoolCreated = true;
+        replicaDownUntil = 0;
+        if (old != null && old != newPool) {
+            old.close();
+        }
+    }
+
+    // Opens the minimum number of connections up front so the first commands don't pay for the handshake
+    public static void init() {
         try {
-            Class.forName(driverName);
-        } catch (ClassNotFoundException e) {
-            System.out.println(e.toString());
+            getPool().warmUp();
+        } catch (SQLException e) {
+            System.out.println("Could not warm up the connection pool: " + e.getMessage());
+        }
+        ConnectionPool replica = getReadPool();
+        if (replica != null) {
+            try {
+                replica.warmUp();
+            } catch (SQLException e) {
+                replicaFailed(e);
+            }
+        }
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (readPool != null) {
+            readPool.close();
+            readPool = null;
+        }
+        readPoolCreated = false;
+    }
+
+    // Scheduler.execute binds the session's last write to the thread for one command and stores it back after,
+    // so read-your-writes follows the session rather than whichever thread runs it
+    public static void bindLastWrite(long lastWriteMillis) {
+        lastWrite.get()[0] = lastWriteMillis;
+    }
+
+    public static long getLastWrite() {
+        return lastWrite.get()[0];
+    }
+
+    // Marks a write on the primary, so the session's reads stay there for ReplicaStickyMs. commit() calls it;
+    // statements that write in auto-commit mode call it themselves. Borrowing a primary connection only to read
+    // doesn't count.
+    public static void recordWrite() {
+        lastWrite.get()[0] = System.currentTimeMillis();
+    }
+
+    public static boolean isReplicaHealthy() {
+        return System.currentTimeMillis() >= replicaDownUntil;
+    }
+
+    // Reads served by the replica, by the primary because the session had just written, and by the primary
+    // because the replica was down
+    public static long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    public static long getStickyReads() {
+        return stickyReads.sum();
+    }
+
+    public static long getFallbackReads() {
+        return fallbackReads.sum();
+    }
+
+    private static void replicaFailed(SQLException e) {
+        if (isReplicaHealthy()) {
+            System.out.println("Read replica unavailable, reading from the primary for " + retryMillis + "ms: " +
+                    e.getMessage());
+        }
+        replicaDownUntil = System.currentTimeMillis() + retryMillis;
+    }
+
+    // Pins one pooled connection to the calling thread until unpin(), e.g. for a whole script run
+    public static Connection pin() throws SQLException {
+        Connection con = pinned.get();
+        if (con == null) {
+            con = getPool().borrow();
+            pinned.set(con);
+        }
+        return con;
+    }
+
+    public static void unpin() {
+        Connection con = pinned.get();
+        pinned.remove();
+        if (con != null) {
+            try {
+                con.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static ConnectionPool createDefaultPool() {
+        if (System.getenv("JdbcUrl") == null) {
+            try {
+                Class.forName(driverName);
+            } catch (ClassNotFoundException e) {
+                System.out.println(e.toString());
+            }
+        }
+        return createPool(connectionUrl, intEnv("PoolMaxSize", 10));
+    }
+
+    private static ConnectionPool createPool(String url, int maxSize) {
+        return new ConnectionPool.ConnectionPoolBuilder(url, userName, userPass)
+                .minSize(Math.min(intEnv("PoolMinSize", 2), maxSize))
+                .maxSize(maxSize)
+                .borrowTimeoutMillis(intEnv("PoolBorrowTimeoutMs", 30_000))
+                .idleTimeoutMillis(intEnv("PoolIdleTimeoutMs", 600_000))
+                .validationIntervalMillis(intEnv("PoolValidationIntervalMs", 30_000))
+                .leakThresholdMillis(intEnv("PoolLeakThresholdMs", 0))
+                .statementCacheSize(intEnv("StatementCacheSize", 64))
+                .build();
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
         }
     }
 
     public Connection createConnection() {
+        Connection pinnedCon = pinned.get();
+        if (pinnedCon != null) {
+            con = pinnedCon;
+            return con;
+        }
+        try {
+            con = getPool().borrow();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return con;
+    }
+
+    // For statements that only read. Borrows from the read replica unless none is configured, the session wrote
+    // within the last ReplicaStickyMs, or the replica failed within the last ReplicaRetryMs; those reads, and
+    // reads on a pinned connection, go to the primary. Reads never count as writes.
+    public Connection createReadConnection() {
+        Connection pinnedCon = pinned.get();
+        if (pinnedCon != null) {
+            con = pinnedCon;
+            return con;
+        }
+        ConnectionPool replica = getReadPool();
+        if (replica != null) {
+            if (System.currentTimeMillis() - lastWrite.get()[0] < stickyMillis) {
+                stickyReads.increment();
+            } else if (!isReplicaHealthy()) {
+                fallbackReads.increment();
+            } else {
+                try {
+                    con = replica.borrow();
+                    replicaReads.increment();
+                    return con;
+                } catch (SQLException e) {
+                    replicaFailed(e);
+                    fallbackReads.increment();
+                }
+            }
+        }
         try {
-            con = DriverManager.getConnection(connectionUrl, userName, userPass);
+            con = getPool().borrow();
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return con;
     }
 
+    // Starts a transaction, or a savepoint inside the caller's transaction if one is already open
+    public void beginTransaction() throws SQLException {
+        if (con.getAutoCommit()) {
+            con.setAutoCommit(false);
+            ownsTransaction = true;
+        } else {
+            ownsTransaction = false;
+            savepoint = con.setSavepoint();
+        }
+    }
+
+    // Commits a transaction started by beginTransaction(); an enclosing transaction is left to its owner
+    public void commit() throws SQLException {
+        recordWrite();
+        if (ownsTransaction) {
+            con.commit();
+            con.setAutoCommit(true);
+            ownsTransaction = false;
+        } else {
+            // savepoints are released with the enclosing transaction (SQL Server has no RELEASE SAVEPOINT)
+            savepoint = null;
+        }
+    }
+
+    // Undoes everything since beginTransaction(), but nothing the enclosing transaction did before it
+    public void rollback() throws SQLException {
+        if (ownsTransaction) {
+            con.rollback();
+            con.setAutoCommit(true);
+            ownsTransaction = false;
+        } else if (savepoint != null) {
+            con.rollback(savepoint);
+            savepoint = null;
+        }
+    }
+
+    // Returns the connection to the pool
     public void closeConnection() {
+        if (this.con == null) {
+            return;
+        }
+        if (this.con == pinned.get()) {
+            // the pinned connection stays with its thread, only clean up a transaction we left open
+            try {
+                rollback();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
         try {
             this.con.close();
         } catch (SQLException e) {
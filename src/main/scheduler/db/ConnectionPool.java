@@ -0,0 +1,393 @@
+package scheduler.db;
+
+import scheduler.metrics.InstrumentedStatement;
+import scheduler.metrics.Metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small fixed-bound JDBC connection pool.
+ *
+ * Connections are handed out as proxies: calling close() on a borrowed connection returns the
+ * physical connection to the pool instead of closing it. A background housekeeper evicts idle
+ * connections above the minimum size, tops the pool back up to the minimum and reports
+ * connections that have been borrowed for longer than the leak threshold. Each physical connection keeps its
+ * own StatementCache, so prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) reuse statements
+ * across borrows.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final String url;
+    private final String userName;
+    private final String userPass;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    // idle connections, most recently returned first so the hottest connections get reused
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    // one permit per connection that may be handed out
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    private ConnectionPool(ConnectionPoolBuilder builder) {
+        this.url = builder.url;
+        this.userName = builder.userName;
+        this.userPass = builder.userPass;
+        this.minSize = builder.minSize;
+        this.maxSize = builder.maxSize;
+        this.borrowTimeoutMillis = builder.borrowTimeoutMillis;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.validationIntervalMillis = builder.validationIntervalMillis;
+        this.leakThresholdMillis = builder.leakThresholdMillis;
+        this.statementCacheSize = builder.statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, 30_000) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Getters
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    // Opens connections until the pool holds at least minSize of them
+    public void warmUp() throws SQLException {
+        while (!closed && totalConnections.get() < minSize) {
+            idle.offerLast(open());
+        }
+    }
+
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + borrowTimeoutMillis +
+                        "ms waiting for a connection (active=" + borrowed.size() + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc)) {
+                    break;
+                }
+                discard(pc);
+            }
+            if (pc == null) {
+                pc = open();
+            }
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.borrowSite = leakThresholdMillis > 0 ? new Exception("Connection borrowed here") : null;
+            pc.leakReported = false;
+            borrowed.add(pc);
+            Metrics.getInstance().recordConnectionAcquire(System.nanoTime() - start);
+            return pc.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        if (!borrowed.remove(pc)) {
+            return;
+        }
+        try {
+            Connection physical = pc.physical;
+            if (closed || physical.isClosed()) {
+                discard(pc);
+                return;
+            }
+            pc.statements.checkInAll();
+            // never hand a half-finished transaction to the next borrower
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            pc.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pc);
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            if (pc.physical.isClosed()) {
+                return false;
+            }
+            // only pay for a validation round trip when the connection has been sitting idle
+            if (System.currentTimeMillis() - pc.lastUsed < validationIntervalMillis) {
+                return true;
+            }
+            return pc.physical.isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, userName, userPass);
+        totalConnections.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void discard(PooledConnection pc) {
+        totalConnections.decrementAndGet();
+        pc.statements.closeAll();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            // the connection is being thrown away anyway
+        }
+    }
+
+    private void housekeep() {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        // evict connections that have been idle for too long, oldest (at the tail) first
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pc = it.next();
+            if (now - pc.lastUsed > idleTimeoutMillis && idle.removeFirstOccurrence(pc)) {
+                discard(pc);
+            }
+        }
+
+        try {
+            warmUp();
+        } catch (SQLException e) {
+            System.out.println("Connection pool could not refill to minimum size: " + e.getMessage());
+        }
+
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pc : borrowed) {
+                if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMillis) {
+                    pc.leakReported = true;
+                    System.out.println("Possible connection leak: connection held for " +
+                            (now - pc.borrowedAt) + "ms");
+                    if (pc.borrowSite != null) {
+                        pc.borrowSite.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile Exception borrowSite;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new StatementCache(physical, statementCacheSize);
+        }
+
+        // every borrow gets its own proxy so a stale reference cannot touch the next borrower's lease
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned = false;
+
+        private Lease(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pc.physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    Object result;
+                    if (isCacheable(method)) {
+                        int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                        result = pc.statements.prepare((String) args[0], autoGeneratedKeys);
+                    } else {
+                        try {
+                            result = method.invoke(pc.physical, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                    // time every statement created through the pool
+                    if (result instanceof Statement) {
+                        return instrument(method, args, (Statement) result);
+                    }
+                    return result;
+            }
+        }
+    }
+
+    // prepareStatement(String) and prepareStatement(String, int autoGeneratedKeys)
+    private static boolean isCacheable(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        return method.getName().equals("prepareStatement") &&
+                (types.length == 1 || (types.length == 2 && types[1] == int.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Statement instrument(Method method, Object[] args, Statement statement) {
+        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+        return InstrumentedStatement.wrap(statement, (Class<Statement>) method.getReturnType(), sql);
+    }
+
+    public static class ConnectionPoolBuilder {
+        private final String url;
+        private final String userName;
+        private final String userPass;
+        private int minSize = 2;
+        private int maxSize = 10;
+        private long borrowTimeoutMillis = 30_000;
+        private long idleTimeoutMillis = 600_000;
+        private long validationIntervalMillis = 30_000;
+        private long leakThresholdMillis = 0;
+        private int statementCacheSize = 64;
+
+        public ConnectionPoolBuilder(String url, String userName, String userPass) {
+            this.url = url;
+            this.userName = userName;
+            this.userPass = userPass;
+        }
+
+        public ConnectionPoolBuilder minSize(int minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        public ConnectionPoolBuilder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public ConnectionPoolBuilder borrowTimeoutMillis(long borrowTimeoutMillis) {
+            this.borrowTimeoutMillis = borrowTimeoutMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder idleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public ConnectionPoolBuilder validationIntervalMillis(long validationIntervalMillis) {
+            this.validationIntervalMillis = validationIntervalMillis;
+            return this;
+        }
+
+        // 0 disables leak detection
+        public ConnectionPoolBuilder leakThresholdMillis(long leakThresholdMillis) {
+            this.leakThresholdMillis = leakThresholdMillis;
+            return this;
+        }
+
+        // prepared statements kept per connection, 0 disables the cache
+        public ConnectionPoolBuilder statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        public ConnectionPool build() {
+            if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+                throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+            }
+            return new ConnectionPool(this);
+        }
+    }
+}
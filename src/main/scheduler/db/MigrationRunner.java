@@ -0,0 +1,238 @@
+package scheduler.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the schema up to the latest version at startup.
+ *
+ * Each migration is a numbered SQL script under resources/, applied in order inside its own transaction together
+ * with its row in the SchemaVersion table, so a migration is applied exactly once even when several processes
+ * start at the same time: the loser of the race fails on the SchemaVersion primary key, rolls back and finds the
+ * version already recorded.
+ *
+ * Version 1 is create.sql. A database that was set up with create.sql before there were migrations has the tables
+ * but no SchemaVersion table; it is recorded as version 1 without running the script.
+ *
+ * The SchemaVersion bookkeeping is portable SQL, but the scripts are written for SQL Server (IDENTITY columns,
+ * INCLUDE indexes, IF NOT EXISTS guards); other databases run them only as far as they accept that syntax.
+ */
+public class MigrationRunner {
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "baseline schema", "create.sql"),
+            new Migration(2, "appointment lookup indexes", "migrations/V002__appointment_lookup_indexes.sql"),
+            new Migration(3, "waitlist", "migrations/V003__waitlist.sql"),
+            new Migration(4, "appointment page indexes", "migrations/V004__appointment_page_indexes.sql"));
+
+    private MigrationRunner() {
+    }
+
+    // The highest version the code knows about
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    // The highest version recorded in the database, 0 if it has no SchemaVersion table yet
+    public static int getCurrentVersion() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            int current = 0;
+            for (int version : applied(con).keySet()) {
+                current = Math.max(current, version);
+            }
+            return current;
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Applies every migration the database doesn't have yet and returns how many were applied
+    public static int migrate() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            boolean sqlServer = con.getMetaData().getDatabaseProductName().toLowerCase().contains("sql server");
+            boolean baseline = !tableExists(con, "SchemaVersion") && tableExists(con, "Appointments");
+            createVersionTable(con);
+            Map<Integer, Long> applied = applied(con);
+            int count = 0;
+            for (Migration migration : MIGRATIONS) {
+                String script = migration.read();
+                long checksum = checksum(script);
+                Long recorded = applied.get(migration.version);
+                if (recorded != null) {
+                    if (recorded != checksum) {
+                        System.out.println("Migration " + migration.version + " (" + migration.description +
+                                ") was changed after it was applied");
+                    }
+                    continue;
+                }
+                if (baseline && migration.version == 1) {
+                    // the tables came from running create.sql by hand
+                    record(con, migration, checksum);
+                    continue;
+                }
+                if (apply(cm, con, migration, batches(script, sqlServer), checksum)) {
+                    System.out.println("Applied migration " + migration.version + ": " + migration.description);
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Returns false if another process applied the migration first
+    private static boolean apply(ConnectionManager cm, Connection con, Migration migration, List<String> batches,
+                                 long checksum) throws SQLException {
+        cm.beginTransaction();
+        try (Statement statement = con.createStatement()) {
+            for (String batch : batches) {
+                statement.execute(batch);
+            }
+            record(con, migration, checksum);
+            cm.commit();
+            return true;
+        } catch (SQLException e) {
+            cm.rollback();
+            if (applied(con).containsKey(migration.version)) {
+                return false;
+            }
+            throw new SQLException("Migration " + migration.version + " (" + migration.description +
+                    ") failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void record(Connection con, Migration migration, long checksum) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_SCHEMA_VERSION)) {
+            statement.setInt(1, migration.version);
+            statement.setString(2, migration.description);
+            statement.setLong(3, checksum);
+            statement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            statement.executeUpdate();
+        }
+    }
+
+    // version -> checksum of the script that was applied
+    private static Map<Integer, Long> applied(Connection con) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        if (!tableExists(con, "SchemaVersion")) {
+            return applied;
+        }
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_SCHEMA_VERSIONS);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt(1), resultSet.getLong(2));
+            }
+        }
+        return applied;
+    }
+
+    private static void createVersionTable(Connection con) throws SQLException {
+        if (tableExists(con, "SchemaVersion")) {
+            return;
+        }
+        try (Statement statement = con.createStatement()) {
+            statement.execute(Queries.CREATE_SCHEMA_VERSION);
+        } catch (SQLException e) {
+            // another process may have created it in the meantime
+            if (!tableExists(con, "SchemaVersion")) {
+                throw e;
+            }
+        }
+    }
+
+    // Embedded databases may store unquoted names in upper case
+    private static boolean tableExists(Connection con, String table) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet tables = metaData.getTables(null, null, name, new String[]{"TABLE"})) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // SQL Server runs each GO batch as a whole; other databases get one statement at a time, split after lines
+    // that end with a semicolon
+    private static List<String> batches(String script, boolean sqlServer) {
+        List<String> batches = new ArrayList<>();
+        StringBuilder batch = new StringBuilder();
+        for (String line : script.split("\r?\n")) {
+            if (line.trim().equalsIgnoreCase("GO")) {
+                addBatch(batches, batch);
+                continue;
+            }
+            batch.append(line).append('\n');
+            if (!sqlServer && line.trim().endsWith(";")) {
+                addBatch(batches, batch);
+            }
+        }
+        addBatch(batches, batch);
+        return batches;
+    }
+
+    private static void addBatch(List<String> batches, StringBuilder batch) {
+        if (!batch.toString().replaceAll("--[^\n]*", "").trim().isEmpty()) {
+            batches.add(batch.toString());
+        }
+        batch.setLength(0);
+    }
+
+    private static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(script.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        // relative to resources/
+        private final String path;
+
+        private Migration(int version, String description, String path) {
+            this.version = version;
+            this.description = description;
+            this.path = path;
+        }
+
+        // From the classpath, or from the source tree when running from compiled classes without resources
+        private String read() throws SQLException {
+            try (InputStream in = MigrationRunner.class.getResourceAsStream("/resources/" + path)) {
+                if (in != null) {
+                    return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                Path file = Paths.get("src", "main", "resources", path);
+                if (Files.exists(file)) {
+                    return Files.readString(file);
+                }
+            } catch (IOException e) {
+                throw new SQLException("Could not read migration " + path + ": " + e.getMessage(), e);
+            }
+            throw new SQLException("Migration " + path + " not found");
+        }
+    }
+}
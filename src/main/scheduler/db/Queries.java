@@ -0,0 +1,147 @@
+package scheduler.db;
+
+/**
+ * Every SQL statement the scheduler runs. Keeping the text in one place means each statement is prepared
+ * from the same string everywhere, so the per-connection statement cache in ConnectionPool can reuse it.
+ */
+public final class Queries {
+    private Queries() {
+    }
+
+    // Patients
+    public static final String INSERT_PATIENT = "INSERT INTO Patients (Username, Salt, Hash) VALUES (?, ?, ?)";
+    public static final String GET_PATIENT = "SELECT Salt, Hash FROM Patients WHERE Username = ?";
+    public static final String PATIENT_EXISTS = "SELECT 1 FROM Patients WHERE Username = ?";
+    public static final String PATIENT_USERNAMES = "SELECT Username FROM Patients";
+
+    // Caregivers
+    public static final String INSERT_CAREGIVER = "INSERT INTO Caregivers (Username, Salt, Hash) VALUES (?, ?, ?)";
+    public static final String GET_CAREGIVER = "SELECT Salt, Hash FROM Caregivers WHERE Username = ?";
+    public static final String CAREGIVER_EXISTS = "SELECT 1 FROM Caregivers WHERE Username = ?";
+    public static final String CAREGIVER_USERNAMES = "SELECT Username FROM Caregivers";
+
+    // Availabilities
+    public static final String GET_ALL_AVAILABILITIES = "SELECT A.Time, A.Username FROM Availabilities AS A";
+    public static final String GET_AVAILABLE_CAREGIVERS =
+            "SELECT A.Username FROM Availabilities AS A WHERE A.Time = ?";
+    public static final String INSERT_AVAILABILITY = "INSERT INTO Availabilities (Time, Username) VALUES (?, ?)";
+    // a caregiver with an appointment on the date is not offered again, or reserve would book them twice
+    public static final String INSERT_AVAILABILITY_IF_NOT_BOOKED = "INSERT INTO Availabilities (Time, Username) " +
+            "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM Appointments WHERE CaregiverName = ? AND Time = ?)";
+    // also skips dates the caregiver is already available on
+    public static final String INSERT_AVAILABILITY_IF_ABSENT = "INSERT INTO Availabilities (Time, Username) " +
+            "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM Availabilities WHERE Time = ? AND Username = ?) " +
+            "AND NOT EXISTS (SELECT 1 FROM Appointments WHERE CaregiverName = ? AND Time = ?)";
+    // both are range seeks on the (Time, Username) primary key
+    public static final String COUNT_AVAILABLE_CAREGIVERS_BY_DATE = "SELECT A.Time, COUNT(*) FROM Availabilities AS A " +
+            "WHERE A.Time >= ? AND A.Time <= ? GROUP BY A.Time ORDER BY A.Time";
+    public static final String NEXT_AVAILABLE_DATE = "SELECT TOP (1) A.Time, COUNT(*) FROM Availabilities AS A " +
+            "WHERE A.Time >= ? GROUP BY A.Time ORDER BY A.Time";
+    public static final String CLAIM_AVAILABILITY = "DELETE FROM Availabilities WHERE Time = ? AND Username = ?";
+
+    // Vaccines
+    public static final String INSERT_VACCINE = "INSERT INTO Vaccines (Name, Doses) VALUES (?, ?)";
+    public static final String GET_VACCINE = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
+    public static final String GET_ALL_VACCINES = "SELECT V.Name, V.Doses FROM Vaccines AS V";
+    public static final String ADD_DOSES = "UPDATE Vaccines SET Doses = Doses + ? WHERE Name = ?";
+    // conditional so the count never goes below zero
+    public static final String REMOVE_DOSES = "UPDATE Vaccines SET Doses = Doses - ? WHERE Name = ? AND Doses >= ?";
+
+    // Appointments
+    public static final String INSERT_APPOINTMENT =
+            "INSERT INTO Appointments (CaregiverName, PatientName, Time, Vaccine) VALUES (?, ?, ?, ?)";
+    public static final String GET_APPOINTMENT =
+            "SELECT A.Time, A.CaregiverName, A.PatientName, A.Vaccine FROM Appointments AS A WHERE A.AppointmentID = ?";
+    public static final String APPOINTMENT_EXISTS = "SELECT 1 FROM Appointments WHERE AppointmentID = ?";
+    public static final String GET_APPOINTMENT_ID =
+            "SELECT A.AppointmentID FROM Appointments AS A WHERE A.CaregiverName = ? AND A.Time = ?";
+    public static final String DELETE_APPOINTMENT = "DELETE FROM Appointments WHERE AppointmentID = ?";
+
+    // appointments per caregiver in [start, end)
+    public static final String COUNT_CAREGIVER_BOOKINGS = "SELECT A.CaregiverName, COUNT(*) FROM Appointments AS A " +
+            "WHERE A.Time >= ? AND A.Time < ? GROUP BY A.CaregiverName";
+
+    // Waitlist
+    public static final String INSERT_WAITLIST_ENTRY =
+            "INSERT INTO Waitlist (PatientName, Vaccine, FromDate, ToDate, CreatedAt) VALUES (?, ?, ?, ?, ?)";
+    public static final String GET_WAITLIST = "SELECT W.WaitlistID, W.PatientName, W.Vaccine, W.FromDate, " +
+            "W.ToDate, W.CreatedAt FROM Waitlist AS W ORDER BY W.WaitlistID";
+    public static final String DELETE_WAITLIST_ENTRY = "DELETE FROM Waitlist WHERE WaitlistID = ?";
+
+    // Schema migrations, see MigrationRunner; plain SQL, unlike the migration scripts themselves
+    public static final String CREATE_SCHEMA_VERSION = "CREATE TABLE SchemaVersion (Version int PRIMARY KEY, " +
+            "Description varchar(255), Checksum bigint, AppliedAt datetime)";
+    public static final String GET_SCHEMA_VERSIONS = "SELECT Version, Checksum FROM SchemaVersion";
+    public static final String INSERT_SCHEMA_VERSION =
+            "INSERT INTO SchemaVersion (Version, Description, Checksum, AppliedAt) VALUES (?, ?, ?, ?)";
+
+    // Full-table exports, in primary key order
+    public static final String EXPORT_CAREGIVERS = "SELECT Username, Salt, Hash FROM Caregivers ORDER BY Username";
+    public static final String EXPORT_PATIENTS = "SELECT Username, Salt, Hash FROM Patients ORDER BY Username";
+    public static final String EXPORT_AVAILABILITIES =
+            "SELECT Time, Username FROM Availabilities ORDER BY Time, Username";
+    public static final String EXPORT_VACCINES = "SELECT Name, Doses FROM Vaccines ORDER BY Name";
+    public static final String EXPORT_APPOINTMENTS = "SELECT AppointmentID, CaregiverName, PatientName, Time, " +
+            "Vaccine FROM Appointments ORDER BY AppointmentID";
+
+    // One page of a user's appointments, newest first. ownerColumn is PatientName or CaregiverName and otherColumn
+    // the opposite one. Parameters: TOP, owner, then AppointmentID bound if after, Time lower and upper bounds if
+    // from and to. Each combination is a fixed string, so every page shape is prepared once per connection and
+    // seeks the (owner, AppointmentID) index.
+    public static String appointmentPage(String ownerColumn, String otherColumn,
+                                         boolean after, boolean from, boolean to) {
+        StringBuilder sql = new StringBuilder("SELECT TOP (?) A.AppointmentID, A.Vaccine, A.Time, A.")
+                .append(otherColumn).append(" FROM Appointments AS A WHERE A.").append(ownerColumn).append(" = ?");
+        if (after) {
+            sql.append(" AND A.AppointmentID < ?");
+        }
+        if (from) {
+            sql.append(" AND A.Time >= ?");
+        }
+        if (to) {
+            sql.append(" AND A.Time <= ?");
+        }
+        return sql.append(" ORDER BY A.AppointmentID DESC").toString();
+    }
+
+    // The owner's appointments among count ids, for the portable cancel on databases other than SQL Server.
+    // Parameters: owner, then the count ids.
+    public static String ownedAppointments(String ownerColumn, int count) {
+        StringBuilder sql = new StringBuilder("SELECT A.AppointmentID, A.Time, A.CaregiverName, A.PatientName, ")
+                .append("A.Vaccine FROM Appointments AS A WHERE A.").append(ownerColumn)
+                .append(" = ? AND A.AppointmentID IN (?");
+        for (int i = 1; i < count; i++) {
+            sql.append(", ?");
+        }
+        return sql.append(") ORDER BY A.AppointmentID").toString();
+    }
+
+    // Cancels up to count of the owner's appointments in one batch: the DELETE's OUTPUT says exactly which rows
+    // this call removed, and only those slots (unless the caregiver uploaded the date again) and doses go back.
+    // A second cancel of the same ids deletes nothing and so restores nothing. ownerColumn is PatientName or
+    // CaregiverName. Parameters: owner, then the count ids. Returns the cancelled rows as AppointmentID, Time,
+    // CaregiverName, PatientName, Vaccine. With returnDoses false the Vaccines table is left to the caller.
+    // T-SQL only, see ownedAppointments for everything else.
+    public static String cancelAppointments(String ownerColumn, int count, boolean returnDoses) {
+        StringBuilder sql = new StringBuilder("SET NOCOUNT ON; ")
+                .append("DECLARE @Cancelled TABLE (AppointmentID int, Time date, CaregiverName varchar(255), ")
+                .append("PatientName varchar(255), Vaccine varchar(255)); ")
+                .append("DELETE FROM Appointments OUTPUT DELETED.AppointmentID, DELETED.Time, DELETED.CaregiverName, ")
+                .append("DELETED.PatientName, DELETED.Vaccine INTO @Cancelled WHERE ").append(ownerColumn)
+                .append(" = ? AND AppointmentID IN (?");
+        for (int i = 1; i < count; i++) {
+            sql.append(", ?");
+        }
+        sql.append("); ")
+                .append("INSERT INTO Availabilities (Time, Username) SELECT C.Time, C.CaregiverName FROM @Cancelled AS C ")
+                .append("WHERE NOT EXISTS (SELECT 1 FROM Availabilities AS A WHERE A.Time = C.Time ")
+                .append("AND A.Username = C.CaregiverName); ");
+        if (returnDoses) {
+            sql.append("UPDATE V SET V.Doses = V.Doses + C.Cancelled FROM Vaccines AS V JOIN ")
+                    .append("(SELECT Vaccine, COUNT(*) AS Cancelled FROM @Cancelled GROUP BY Vaccine) AS C ")
+                    .append("ON V.Name = C.Vaccine; ");
+        }
+        return sql.append("SELECT AppointmentID, Time, CaregiverName, PatientName, Vaccine FROM @Cancelled ")
+                .append("ORDER BY AppointmentID;").toString();
+    }
+}
@@ -0,0 +1,145 @@
+package scheduler.db;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The estimated execution plan of every statement a command can run, for the explain command.
+ *
+ * On SQL Server the statements are compiled under SET SHOWPLAN_TEXT ON, which returns the plan instead of running
+ * them, so explaining reserve or cancel changes nothing. Other databases get EXPLAIN in front of the statement.
+ * Every parameter is bound to NULL; the plan is the one SQL Server compiles for a parameterized statement.
+ */
+public final class QueryPlans {
+    // command -> the statements it may run, in the order it runs them
+    private static final Map<String, List<String>> STATEMENTS = new LinkedHashMap<>();
+
+    static {
+        STATEMENTS.put("create_patient", List.of(Queries.PATIENT_EXISTS, Queries.INSERT_PATIENT));
+        STATEMENTS.put("create_caregiver", List.of(Queries.CAREGIVER_EXISTS, Queries.INSERT_CAREGIVER));
+        STATEMENTS.put("login_patient", List.of(Queries.GET_PATIENT));
+        STATEMENTS.put("login_caregiver", List.of(Queries.GET_CAREGIVER));
+        STATEMENTS.put("search_caregiver_schedule", List.of(Queries.GET_AVAILABLE_CAREGIVERS));
+        STATEMENTS.put("search_range", List.of(Queries.COUNT_AVAILABLE_CAREGIVERS_BY_DATE));
+        STATEMENTS.put("next_available", List.of(Queries.NEXT_AVAILABLE_DATE));
+        STATEMENTS.put("reserve", List.of(Queries.COUNT_CAREGIVER_BOOKINGS, Queries.CLAIM_AVAILABILITY,
+                Queries.GET_AVAILABLE_CAREGIVERS, Queries.REMOVE_DOSES, Queries.INSERT_APPOINTMENT,
+                Queries.GET_APPOINTMENT_ID));
+        STATEMENTS.put("waitlist", List.of(Queries.INSERT_WAITLIST_ENTRY, Queries.DELETE_WAITLIST_ENTRY));
+        STATEMENTS.put("upload_availability", List.of(Queries.INSERT_AVAILABILITY_IF_NOT_BOOKED,
+                Queries.INSERT_AVAILABILITY_IF_ABSENT));
+        STATEMENTS.put("cancel", List.of(Queries.cancelAppointments("PatientName", 1, true),
+                Queries.ownedAppointments("PatientName", 1), Queries.DELETE_APPOINTMENT,
+                Queries.INSERT_AVAILABILITY_IF_ABSENT, Queries.ADD_DOSES));
+        STATEMENTS.put("cancel_many", List.of(Queries.cancelAppointments("PatientName", 10, true),
+                Queries.ownedAppointments("PatientName", 10)));
+        STATEMENTS.put("add_doses", List.of(Queries.GET_VACCINE, Queries.INSERT_VACCINE, Queries.ADD_DOSES));
+        STATEMENTS.put("show_appointments", List.of(
+                Queries.appointmentPage("PatientName", "CaregiverName", false, false, false),
+                Queries.appointmentPage("PatientName", "CaregiverName", true, true, true),
+                Queries.appointmentPage("CaregiverName", "PatientName", false, false, false),
+                Queries.appointmentPage("CaregiverName", "PatientName", true, true, true)));
+        STATEMENTS.put("export", List.of(Queries.EXPORT_CAREGIVERS, Queries.EXPORT_PATIENTS,
+                Queries.EXPORT_AVAILABILITIES, Queries.EXPORT_VACCINES, Queries.EXPORT_APPOINTMENTS));
+    }
+
+    private QueryPlans() {
+    }
+
+    public static Set<String> getCommands() {
+        return STATEMENTS.keySet();
+    }
+
+    // Throws IllegalArgumentException for a command that runs no SQL of its own
+    public static void explain(String command, PrintStream out) throws SQLException {
+        List<String> statements = STATEMENTS.get(command);
+        if (statements == null) {
+            throw new IllegalArgumentException("No statements to explain for " + command);
+        }
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            boolean sqlServer = con.getMetaData().getDatabaseProductName().toLowerCase().contains("sql server");
+            for (String sql : statements) {
+                out.println(sql);
+                try {
+                    explain(con, sql, sqlServer, out);
+                } catch (SQLException e) {
+                    out.println("  could not explain: " + e.getMessage());
+                }
+                out.println();
+            }
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // The three-argument prepareStatement bypasses the statement cache, so no plan-only handle is left behind
+    private static void explain(Connection con, String sql, boolean sqlServer, PrintStream out) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(sqlServer ? sql : "EXPLAIN " + sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            bindNulls(statement, sql);
+            if (!sqlServer) {
+                print(statement.executeQuery(), out);
+                return;
+            }
+            try (Statement showPlan = con.createStatement()) {
+                showPlan.execute("SET SHOWPLAN_TEXT ON");
+                try {
+                    // a batch returns one plan per statement
+                    boolean isResultSet = statement.execute();
+                    while (isResultSet || statement.getUpdateCount() != -1) {
+                        if (isResultSet) {
+                            print(statement.getResultSet(), out);
+                        }
+                        isResultSet = statement.getMoreResults();
+                    }
+                } finally {
+                    showPlan.execute("SET SHOWPLAN_TEXT OFF");
+                }
+            }
+        }
+    }
+
+    // Typed where the driver can describe the parameters, which it has to do before SHOWPLAN is switched on
+    private static void bindNulls(PreparedStatement statement, String sql) throws SQLException {
+        int count = (int) sql.chars().filter(c -> c == '?').count();
+        ParameterMetaData metaData = null;
+        try {
+            metaData = statement.getParameterMetaData();
+            count = metaData.getParameterCount();
+        } catch (SQLException e) {
+            // fall back to counting the placeholders
+        }
+        for (int i = 1; i <= count; i++) {
+            int type = Types.VARCHAR;
+            if (metaData != null) {
+                try {
+                    type = metaData.getParameterType(i);
+                } catch (SQLException e) {
+                    // keep VARCHAR
+                }
+            }
+            statement.setNull(i, type);
+        }
+    }
+
+    private static void print(ResultSet resultSet, PrintStream out) throws SQLException {
+        try (ResultSet rows = resultSet) {
+            while (rows.next()) {
+                out.println("  " + rows.getString(1));
+            }
+        }
+    }
+}
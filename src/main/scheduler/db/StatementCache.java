@@ -0,0 +1,166 @@
+package scheduler.db;
+
+import scheduler.metrics.Metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the prepared statements of one physical connection.
+ *
+ * A cached statement is handed out as a proxy whose close() clears its parameters and puts it back in the
+ * cache instead of closing it. If the same SQL is prepared again while its cached statement is still checked
+ * out, the caller gets a plain uncached statement. Only the connection's current borrower uses the cache, so
+ * it is not thread-safe.
+ */
+class StatementCache {
+    private final Connection physical;
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries;
+
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                Metrics.getInstance().recordStatementCacheEviction();
+                return true;
+            }
+        };
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        if (capacity <= 0) {
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        String key = autoGeneratedKeys + ":" + sql;
+        Entry entry = entries.get(key);
+        if (entry != null && entry.evicted) {
+            // its reset failed when it was last checked in
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry != null && !entry.inUse) {
+            Metrics.getInstance().recordStatementCacheHit();
+            entry.inUse = true;
+            return entry.handle;
+        }
+        Metrics.getInstance().recordStatementCacheMiss();
+        PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null) {
+            // already checked out, e.g. the same query nested in itself
+            return statement;
+        }
+        entry = new Entry(statement);
+        entry.inUse = true;
+        entries.put(key, entry);
+        return entry.handle;
+    }
+
+    // Called when the connection goes back to the pool: statements the borrower forgot to close become reusable
+    void checkInAll() {
+        for (Entry entry : entries.values()) {
+            if (entry.inUse) {
+                entry.checkIn();
+            }
+        }
+    }
+
+    // Closes every cached statement, when the physical connection is discarded
+    void closeAll() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry entry : all) {
+            entry.evict();
+        }
+    }
+
+    private static final class Entry implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement handle;
+        private boolean inUse = false;
+        private boolean evicted = false;
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+            this.handle = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        private void checkIn() {
+            inUse = false;
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                evict();
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // the statement is being thrown away anyway
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        if (evicted) {
+                            inUse = false;
+                            closeQuietly();
+                        } else {
+                            checkIn();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + statement + "]";
+                default:
+                    if (!inUse) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
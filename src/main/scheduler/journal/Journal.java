@@ -0,0 +1,430 @@
+package scheduler.journal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of fixed-size records in memory-mapped segment files.
+ *
+ * Every record is RECORD_SIZE bytes, so record n of a segment lives at n * RECORD_SIZE and its step flags can be
+ * updated in place. A record is valid if its magic number and CRC match; reopening a journal stops at the
+ * first invalid record of a segment, which drops a torn write at the tail. Appends and flag updates only touch
+ * the mapped pages; sync() forces them to disk, and concurrent callers share a single force (group commit).
+ * When a segment is full a new one is started, and compact() deletes older segments whose records are all
+ * complete; it runs at every such roll-over and when the journal is opened.
+ */
+public class Journal implements AutoCloseable {
+    public static final int RECORD_SIZE = 1024;
+    // set once the operation a record describes needs no more work, the other 15 bits belong to the caller
+    public static final short COMPLETE = (short) 0x8000;
+    // longest username or vaccine name in bytes, the columns are varchar(255)
+    public static final int MAX_STRING_BYTES = 300;
+
+    private static final int MAGIC = 0x4A524E4C;
+    private static final byte VERSION = 1;
+    private static final int STEPS_OFFSET = 6;
+    private static final int STRINGS_OFFSET = 40;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{20})\\.log");
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final boolean fsync;
+    // first seq -> segment, guarded by this
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Set<Segment> dirty = new HashSet<>();
+    private Segment active;
+    private long nextSeq;
+    private long writes = 0;
+
+    // group commit state, guarded by syncMonitor
+    private final Object syncMonitor = new Object();
+    private boolean syncing = false;
+    private long durableWrites = 0;
+    private long forces = 0;
+
+    private Journal(Path directory, int recordsPerSegment, boolean fsync) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.fsync = fsync;
+    }
+
+    // Opens (or creates) the journal in directory. Without fsync, sync() is a no-op: records still survive a
+    // crash of the process but not of the machine.
+    public static Journal open(Path directory, int recordsPerSegment, boolean fsync) throws IOException {
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("Segments need room for at least one record");
+        }
+        Files.createDirectories(directory);
+        Journal journal = new Journal(directory, recordsPerSegment, fsync);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path file : stream) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            Segment segment = journal.map(file.getKey(), file.getValue());
+            segment.recover();
+            journal.segments.put(file.getKey(), segment);
+        }
+        if (journal.segments.isEmpty()) {
+            journal.active = journal.createSegment(1);
+        } else {
+            journal.active = journal.segments.lastEntry().getValue();
+        }
+        journal.nextSeq = journal.active.firstSeq + journal.active.count;
+        return journal;
+    }
+
+    // Getters
+    public synchronized long getNextSeq() {
+        return nextSeq;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized int getIncompleteCount() {
+        int incomplete = 0;
+        for (Segment segment : segments.values()) {
+            incomplete += segment.incomplete;
+        }
+        return incomplete;
+    }
+
+    public long getForceCount() {
+        synchronized (syncMonitor) {
+            return forces;
+        }
+    }
+
+    // Writes the record into the mapped segment and returns its sequence number. Call sync() before relying
+    // on it surviving a machine crash.
+    public synchronized long append(JournalRecord record) throws IOException {
+        if (active.count == active.capacity) {
+            active = createSegment(nextSeq);
+            // a long-running process only reopens the journal at its next start, so older segments are dropped
+            // here once their records are complete
+            try {
+                compact();
+            } catch (IOException e) {
+                System.out.println("Could not compact the journal: " + e.getMessage());
+            }
+        }
+        long seq = nextSeq++;
+        byte[] bytes = encode(record, seq);
+        active.buffer.put(active.count * RECORD_SIZE, bytes);
+        active.count++;
+        if ((record.getSteps() & COMPLETE) == 0) {
+            active.incomplete++;
+        }
+        dirty.add(active);
+        writes++;
+        return seq;
+    }
+
+    // Sets step flags on an appended record, flags are never cleared
+    public synchronized void mark(long seq, short steps) {
+        Segment segment = segmentOf(seq);
+        int offset = (int) (seq - segment.firstSeq) * RECORD_SIZE + STEPS_OFFSET;
+        short before = segment.buffer.getShort(offset);
+        short after = (short) (before | steps);
+        if (after == before) {
+            return;
+        }
+        segment.buffer.putShort(offset, after);
+        if ((before & COMPLETE) == 0 && (after & COMPLETE) != 0) {
+            segment.incomplete--;
+        }
+        dirty.add(segment);
+        writes++;
+    }
+
+    public synchronized JournalRecord read(long seq) {
+        Segment segment = segmentOf(seq);
+        return decode(segment.buffer, (int) (seq - segment.firstSeq));
+    }
+
+    // Makes every append and mark made before this call durable. Callers that arrive while a force is running
+    // wait for it and then share the next one.
+    public void sync() throws IOException {
+        if (!fsync) {
+            return;
+        }
+        long target;
+        synchronized (this) {
+            target = writes;
+        }
+        while (true) {
+            synchronized (syncMonitor) {
+                while (syncing && durableWrites < target) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the journal");
+                    }
+                }
+                if (durableWrites >= target) {
+                    return;
+                }
+                syncing = true;
+            }
+
+            // this thread leads the next force for everybody who is waiting
+            long covered;
+            List<Segment> toForce;
+            synchronized (this) {
+                covered = writes;
+                toForce = new ArrayList<>(dirty);
+                dirty.clear();
+            }
+            boolean forced = false;
+            try {
+                for (Segment segment : toForce) {
+                    segment.buffer.force();
+                }
+                forced = true;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                if (!forced) {
+                    synchronized (this) {
+                        dirty.addAll(toForce);
+                    }
+                }
+                synchronized (syncMonitor) {
+                    syncing = false;
+                    if (forced) {
+                        durableWrites = Math.max(durableWrites, covered);
+                        forces++;
+                    }
+                    syncMonitor.notifyAll();
+                }
+            }
+        }
+    }
+
+    // Hands every valid record with seq >= fromSeq to consumer, oldest first
+    public void scan(long fromSeq, Consumer<JournalRecord> consumer) {
+        long seq = fromSeq;
+        while (true) {
+            JournalRecord record;
+            synchronized (this) {
+                if (seq >= nextSeq) {
+                    return;
+                }
+                Map.Entry<Long, Segment> entry = segments.floorEntry(seq);
+                if (entry == null) {
+                    // records before the oldest segment have been compacted away
+                    seq = segments.firstKey();
+                    continue;
+                }
+                Segment segment = entry.getValue();
+                int index = (int) (seq - segment.firstSeq);
+                if (index >= segment.count) {
+                    Long next = segments.higherKey(segment.firstSeq);
+                    if (next == null) {
+                        return;
+                    }
+                    seq = next;
+                    continue;
+                }
+                record = decode(segment.buffer, index);
+            }
+            consumer.accept(record);
+            seq++;
+        }
+    }
+
+    public List<JournalRecord> incomplete() {
+        List<JournalRecord> records = new ArrayList<>();
+        long from;
+        synchronized (this) {
+            from = segments.firstKey();
+            // skip segments without incomplete records
+            for (Segment segment : segments.values()) {
+                if (segment.incomplete > 0 || segment == active) {
+                    from = segment.firstSeq;
+                    break;
+                }
+            }
+        }
+        scan(from, record -> {
+            if (!record.isComplete()) {
+                records.add(record);
+            }
+        });
+        return records;
+    }
+
+    // Deletes segments, other than the one being appended to, whose records are all complete.
+    // Returns the number of segments removed.
+    public synchronized int compact() throws IOException {
+        int removed = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || segment.incomplete > 0) {
+                continue;
+            }
+            segments.remove(segment.firstSeq);
+            dirty.remove(segment);
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+            removed++;
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        }
+    }
+
+    private Segment segmentOf(long seq) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(seq);
+        if (entry == null || seq >= entry.getKey() + entry.getValue().count) {
+            throw new IllegalArgumentException("No journal record " + seq);
+        }
+        return entry.getValue();
+    }
+
+    private Segment createSegment(long firstSeq) throws IOException {
+        Path path = directory.resolve(String.format("segment-%020d.log", firstSeq));
+        Segment segment = map(firstSeq, path);
+        segments.put(firstSeq, segment);
+        return segment;
+    }
+
+    private Segment map(long firstSeq, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // segments written with a different size setting keep their own size
+        long existing = channel.size();
+        int capacity = existing > 0 ? (int) (existing / RECORD_SIZE) : recordsPerSegment;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        return new Segment(firstSeq, path, channel, buffer, capacity);
+    }
+
+    private static byte[] encode(JournalRecord record, long seq) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.put(4, record.getType());
+        buffer.put(5, VERSION);
+        buffer.putShort(STEPS_OFFSET, record.getSteps());
+        buffer.putLong(8, seq);
+        buffer.putLong(16, record.getTimestamp());
+        buffer.putInt(24, record.getAppointmentID());
+        buffer.putInt(28, record.getDoses());
+        buffer.putLong(32, record.getDate() == null ? Long.MIN_VALUE : record.getDate().toEpochDay());
+        int offset = STRINGS_OFFSET;
+        for (String value : new String[]{record.getCaregiver(), record.getPatient(), record.getVaccine()}) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_BYTES) {
+                throw new IllegalArgumentException("Journal field too long: " + value);
+            }
+            buffer.putShort(offset, (short) bytes.length);
+            buffer.put(offset + 2, bytes);
+            offset += 2 + MAX_STRING_BYTES;
+        }
+        buffer.putInt(CRC_OFFSET, checksum(buffer));
+        return buffer.array();
+    }
+
+    // Returns null if the slot doesn't hold a complete, valid record
+    private static JournalRecord decode(ByteBuffer buffer, int index) {
+        ByteBuffer record = buffer.slice(index * RECORD_SIZE, RECORD_SIZE);
+        if (record.getInt(0) != MAGIC || record.getInt(CRC_OFFSET) != checksum(record)) {
+            return null;
+        }
+        long epochDay = record.getLong(32);
+        String[] values = new String[3];
+        int offset = STRINGS_OFFSET;
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[record.getShort(offset)];
+            record.get(offset + 2, bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+            offset += 2 + MAX_STRING_BYTES;
+        }
+        return new JournalRecord.JournalRecordBuilder(record.get(4))
+                .seq(record.getLong(8))
+                .timestamp(record.getLong(16))
+                .steps(record.getShort(STEPS_OFFSET))
+                .appointmentID(record.getInt(24))
+                .doses(record.getInt(28))
+                .date(epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay))
+                .caregiver(values[0])
+                .patient(values[1])
+                .vaccine(values[2])
+                .build();
+    }
+
+    // Covers the type and everything from the seq on; the step flags are left out since they change in place
+    private static int checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.get(4));
+        crc.update(record.slice(8, CRC_OFFSET - 8));
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+        private final long firstSeq;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int count = 0;
+        private int incomplete = 0;
+
+        private Segment(long firstSeq, Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+            this.firstSeq = firstSeq;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        // Counts the valid records at the start of a reopened segment
+        private void recover() {
+            while (count < capacity) {
+                JournalRecord record = decode(buffer, count);
+                if (record == null || record.getSeq() != firstSeq + count) {
+                    break;
+                }
+                if (!record.isComplete()) {
+                    incomplete++;
+                }
+                count++;
+            }
+        }
+    }
+}
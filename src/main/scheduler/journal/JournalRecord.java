@@ -0,0 +1,164 @@
+package scheduler.journal;
+
+import java.time.LocalDate;
+
+/**
+ * One fixed-size journal entry. The payload never changes after it is appended; only the step flags are
+ * updated in place as the operation it describes makes progress.
+ */
+public class JournalRecord {
+    private final byte type;
+    private final long seq;
+    private final long timestamp;
+    private final short steps;
+    private final int appointmentID;
+    private final int doses;
+    private final LocalDate date;
+    private final String caregiver;
+    private final String patient;
+    private final String vaccine;
+
+    private JournalRecord(JournalRecordBuilder builder) {
+        this.type = builder.type;
+        this.seq = builder.seq;
+        this.timestamp = builder.timestamp;
+        this.steps = builder.steps;
+        this.appointmentID = builder.appointmentID;
+        this.doses = builder.doses;
+        this.date = builder.date;
+        this.caregiver = builder.caregiver;
+        this.patient = builder.patient;
+        this.vaccine = builder.vaccine;
+    }
+
+    // Getters
+    public byte getType() {
+        return type;
+    }
+
+    // 0 until the record has been appended
+    public long getSeq() {
+        return seq;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public short getSteps() {
+        return steps;
+    }
+
+    public boolean hasSteps(int mask) {
+        return (steps & mask) == mask;
+    }
+
+    public boolean isComplete() {
+        return hasSteps(Journal.COMPLETE);
+    }
+
+    public int getAppointmentID() {
+        return appointmentID;
+    }
+
+    public int getDoses() {
+        return doses;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public String getCaregiver() {
+        return caregiver;
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public String getVaccine() {
+        return vaccine;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord{" +
+                "seq=" + seq +
+                ", type=" + type +
+                ", steps=" + Integer.toBinaryString(steps & 0xFFFF) +
+                ", appointmentID=" + appointmentID +
+                ", doses=" + doses +
+                ", date=" + date +
+                ", caregiver='" + caregiver + '\'' +
+                ", patient='" + patient + '\'' +
+                ", vaccine='" + vaccine + '\'' +
+                '}';
+    }
+
+    public static class JournalRecordBuilder {
+        private final byte type;
+        private long seq = 0;
+        private long timestamp = System.currentTimeMillis();
+        private short steps = 0;
+        private int appointmentID = 0;
+        private int doses = 0;
+        private LocalDate date = null;
+        private String caregiver = "";
+        private String patient = "";
+        private String vaccine = "";
+
+        public JournalRecordBuilder(byte type) {
+            this.type = type;
+        }
+
+        JournalRecordBuilder seq(long seq) {
+            this.seq = seq;
+            return this;
+        }
+
+        JournalRecordBuilder timestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        public JournalRecordBuilder steps(short steps) {
+            this.steps = steps;
+            return this;
+        }
+
+        public JournalRecordBuilder appointmentID(int appointmentID) {
+            this.appointmentID = appointmentID;
+            return this;
+        }
+
+        public JournalRecordBuilder doses(int doses) {
+            this.doses = doses;
+            return this;
+        }
+
+        public JournalRecordBuilder date(LocalDate date) {
+            this.date = date;
+            return this;
+        }
+
+        public JournalRecordBuilder caregiver(String caregiver) {
+            this.caregiver = caregiver == null ? "" : caregiver;
+            return this;
+        }
+
+        public JournalRecordBuilder patient(String patient) {
+            this.patient = patient == null ? "" : patient;
+            return this;
+        }
+
+        public JournalRecordBuilder vaccine(String vaccine) {
+            this.vaccine = vaccine == null ? "" : vaccine;
+            return this;
+        }
+
+        public JournalRecord build() {
+            return new JournalRecord(this);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package scheduler.journal;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.Queries;
+import scheduler.model.Appointment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Write-ahead intent log for reservations, cancellations and write-behind dose changes.
+ *
+ * A reserve or cancel is journaled and synced before its transaction commits, and marked APPLIED once the
+ * commit returns. In write-behind mode the dose change is only in memory at that point, so the record stays
+ * incomplete until the inventory flush that contains it has committed (DOSE_DURABLE). After a crash,
+ * recover() looks at every incomplete record: the Appointments table tells whether the transaction
+ * committed, and doses that never reached the Vaccines table are applied there. Disabled (every method is a
+ * no-op and seqs are 0) unless configure() is called.
+ */
+public class ReservationJournal {
+    public static final byte RESERVE = 1;
+    public static final byte CANCEL = 2;
+    public static final byte DOSES = 3;
+
+    public static final short APPLIED = 1;
+    public static final short DOSE_DURABLE = 2;
+    public static final short ABORTED = 4;
+
+    private static final ReservationJournal INSTANCE = new ReservationJournal();
+
+    private volatile Journal journal = null;
+
+    private ReservationJournal() {
+    }
+
+    public static ReservationJournal getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    // Opens the journal, finishes whatever the last run left incomplete and drops fully complete segments.
+    // Must run before the caches are loaded so they see the recovered doses.
+    public synchronized void configure(Path directory, int recordsPerSegment, boolean fsync)
+            throws IOException, SQLException {
+        Journal opened = Journal.open(directory, recordsPerSegment, fsync);
+        try {
+            int recovered = recover(opened);
+            opened.sync();
+            opened.compact();
+            if (recovered > 0) {
+                System.out.println("Recovered " + recovered + " journaled operations");
+            }
+        } catch (IOException | SQLException e) {
+            opened.close();
+            throw e;
+        }
+        journal = opened;
+    }
+
+    // Appends a reservation whose transaction is about to commit and waits until the record is durable.
+    // doses is the change the inventory still has to flush, 0 if it is part of the transaction.
+    public long logReserve(int appointmentID, LocalDate date, String caregiver, String patient, String vaccine,
+                           int doses) throws SQLException {
+        return log(new JournalRecord.JournalRecordBuilder(RESERVE)
+                .appointmentID(appointmentID)
+                .date(date)
+                .caregiver(caregiver)
+                .patient(patient)
+                .vaccine(vaccine)
+                .doses(doses)
+                .build());
+    }
+
+    // Appends one record per cancelled appointment and waits once until all of them are durable
+    public long[] logCancels(List<Appointment> appointments, int doses) throws SQLException {
+        long[] seqs = new long[appointments.size()];
+        Journal current = journal;
+        if (current == null || appointments.isEmpty()) {
+            return seqs;
+        }
+        try {
+            for (int i = 0; i < seqs.length; i++) {
+                Appointment appointment = appointments.get(i);
+                seqs[i] = current.append(new JournalRecord.JournalRecordBuilder(CANCEL)
+                        .appointmentID(appointment.getAppointmentID())
+                        .date(appointment.getTime().toLocalDate())
+                        .caregiver(appointment.getCaregiverName())
+                        .patient(appointment.getPatientName())
+                        .vaccine(appointment.getVaccineName())
+                        .doses(doses)
+                        .build());
+            }
+            current.sync();
+            return seqs;
+        } catch (IOException e) {
+            throw new SQLException("Could not write the journal: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    // A write-behind dose change that is applied to the inventory right after it is logged
+    public long logDoses(String vaccine, int doses) throws SQLException {
+        return log(new JournalRecord.JournalRecordBuilder(DOSES)
+                .vaccine(vaccine)
+                .doses(doses)
+                .steps(APPLIED)
+                .build());
+    }
+
+    // The transaction committed. Not synced: if the flag is lost, recovery finds the committed rows.
+    public void applied(long seq, boolean doseDurable) {
+        if (seq != 0) {
+            journal.mark(seq, doseDurable ? (short) (APPLIED | DOSE_DURABLE | Journal.COMPLETE) : APPLIED);
+        }
+    }
+
+    // The transaction rolled back before it tried to commit
+    public void aborted(long seq) {
+        if (seq != 0) {
+            journal.mark(seq, (short) (ABORTED | Journal.COMPLETE));
+        }
+    }
+
+    // The dose changes of these records are in the Vaccines table
+    public void doseDurable(Collection<Long> seqs) throws SQLException {
+        if (seqs.isEmpty()) {
+            return;
+        }
+        for (long seq : seqs) {
+            journal.mark(seq, (short) (DOSE_DURABLE | Journal.COMPLETE));
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            throw new SQLException("Could not sync the journal: " + e.getMessage(), e);
+        }
+    }
+
+    public void close() {
+        Journal current = journal;
+        journal = null;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the journal");
+        }
+    }
+
+    private long log(JournalRecord record) throws SQLException {
+        Journal current = journal;
+        if (current == null) {
+            return 0;
+        }
+        try {
+            long seq = current.append(record);
+            current.sync();
+            return seq;
+        } catch (IOException e) {
+            throw new SQLException("Could not write the journal: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    // Returns the number of records that were completed
+    private static int recover(Journal journal) throws IOException, SQLException {
+        List<JournalRecord> incomplete = journal.incomplete();
+        if (incomplete.isEmpty()) {
+            return 0;
+        }
+
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement existsStatement = con.prepareStatement(Queries.APPOINTMENT_EXISTS);
+             PreparedStatement addStatement = con.prepareStatement(Queries.ADD_DOSES);
+             PreparedStatement removeStatement = con.prepareStatement(Queries.REMOVE_DOSES)) {
+            for (JournalRecord record : incomplete) {
+                boolean applied = record.hasSteps(APPLIED);
+                if (!applied) {
+                    // the record was synced before the commit, the Appointments table says how that went
+                    existsStatement.setInt(1, record.getAppointmentID());
+                    boolean exists;
+                    try (ResultSet resultSet = existsStatement.executeQuery()) {
+                        exists = resultSet.next();
+                    }
+                    applied = record.getType() == RESERVE ? exists : !exists;
+                }
+                if (!applied) {
+                    journal.mark(record.getSeq(), (short) (ABORTED | Journal.COMPLETE));
+                    continue;
+                }
+                if (record.getDoses() > 0) {
+                    addStatement.setInt(1, record.getDoses());
+                    addStatement.setString(2, record.getVaccine());
+                    addStatement.executeUpdate();
+                } else if (record.getDoses() < 0) {
+                    removeStatement.setInt(1, -record.getDoses());
+                    removeStatement.setString(2, record.getVaccine());
+                    removeStatement.setInt(3, -record.getDoses());
+                    if (removeStatement.executeUpdate() != 1) {
+                        System.out.println("Not enough doses of " + record.getVaccine() + " left to replay " +
+                                record);
+                    }
+                }
+                journal.mark(record.getSeq(), (short) (APPLIED | DOSE_DURABLE | Journal.COMPLETE));
+                if (record.getDoses() != 0) {
+                    // the update has committed, a second crash must not replay it
+                    journal.sync();
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Journal recovery failed: " + e.getMessage(), e);
+        } finally {
+            cm.closeConnection();
+        }
+        return incomplete.size();
+    }
+}
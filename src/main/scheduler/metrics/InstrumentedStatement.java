@@ -0,0 +1,125 @@
+package scheduler.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Wraps a JDBC statement so every execution is timed and recorded in Metrics together with its SQL text and
+ * bind parameters, and every query's ResultSet reports how many rows were read.
+ */
+public class InstrumentedStatement implements InvocationHandler {
+    private final Statement statement;
+    private final String sql;
+    private Object[] parameters = new Object[8];
+
+    private InstrumentedStatement(Statement statement, String sql) {
+        this.statement = statement;
+        this.sql = sql;
+    }
+
+    // sql is null for plain Statements, whose text is only known when they execute
+    public static <T extends Statement> T wrap(T statement, Class<T> type, String sql) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new InstrumentedStatement(statement, sql)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+            bind((Integer) args[0], args[1]);
+        } else if (name.equals("clearParameters")) {
+            Arrays.fill(parameters, null);
+        }
+        if (!name.startsWith("execute")) {
+            return forward(method, args);
+        }
+
+        String text = sql != null ? sql : (args != null && args.length > 0 && args[0] instanceof String ?
+                (String) args[0] : "<batch>");
+        Metrics metrics = Metrics.getInstance();
+        long start = System.nanoTime();
+        try {
+            Object result = forward(method, args);
+            metrics.recordStatement(text, System.nanoTime() - start, parameters);
+            if (result instanceof ResultSet) {
+                return RowCounter.wrap((ResultSet) result, text);
+            }
+            return result;
+        } catch (SQLException e) {
+            metrics.recordStatement(text, System.nanoTime() - start, parameters);
+            metrics.recordError(text, e);
+            throw e;
+        }
+    }
+
+    private void bind(int index, Object value) {
+        if (index < 1 || index > 256) {
+            return;
+        }
+        if (index > parameters.length) {
+            parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+        }
+        parameters[index - 1] = value;
+    }
+
+    private Object forward(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Counts rows as they are read and records the total once the result set is exhausted or closed
+    private static class RowCounter implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final String sql;
+        private long rows = 0;
+        private boolean recorded = false;
+
+        private RowCounter(ResultSet resultSet, String sql) {
+            this.resultSet = resultSet;
+            this.sql = sql;
+        }
+
+        static ResultSet wrap(ResultSet resultSet, String sql) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new RowCounter(resultSet, sql));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            String name = method.getName();
+            if (name.equals("next")) {
+                if ((Boolean) result) {
+                    rows++;
+                } else {
+                    recordOnce();
+                }
+            } else if (name.equals("close")) {
+                recordOnce();
+            }
+            return result;
+        }
+
+        private void recordOnce() {
+            if (!recorded) {
+                recorded = true;
+                Metrics.getInstance().recordRows(sql, rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package scheduler.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide latency and error metrics for commands, SQL statements and connection acquisition, plus a log
+ * of the most recent statements slower than SlowQueryMs (default 100).
+ */
+public class Metrics implements SchedulerMetricsMXBean {
+    private static final Metrics INSTANCE = new Metrics();
+    // caps the number of distinct command names so garbage input can't grow the map without bound
+    private static final int MAX_COMMAND_NAMES = 128;
+    private static final int MAX_STATEMENTS = 512;
+    private static final int SLOW_QUERY_LOG_SIZE = 256;
+
+    private final ConcurrentHashMap<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+    private final LatencyHistogram allCommands = new LatencyHistogram();
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final LatencyHistogram allStatements = new LatencyHistogram();
+    private final LatencyHistogram connectionAcquire = new LatencyHistogram();
+    private final ConcurrentHashMap<String, LongAdder> errorsBySqlState = new ConcurrentHashMap<>();
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+    private final LongAdder slowQueryCount = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+    private final long slowQueryThresholdNanos;
+
+    private Metrics() {
+        String threshold = System.getenv("SlowQueryMs");
+        this.slowQueryThresholdNanos = (threshold == null ? 100 : Long.parseLong(threshold.trim())) * 1_000_000L;
+    }
+
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("scheduler:type=Metrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    public void recordCommand(String operation, long nanos) {
+        LatencyHistogram histogram = commands.get(operation);
+        if (histogram == null) {
+            String key = commands.size() < MAX_COMMAND_NAMES ? operation : "other";
+            histogram = commands.computeIfAbsent(key, k -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+        allCommands.record(nanos);
+    }
+
+    public void recordConnectionAcquire(long nanos) {
+        connectionAcquire.record(nanos);
+    }
+
+    public void recordStatement(String sql, long nanos, Object[] parameters) {
+        statementStats(sql).latency.record(nanos);
+        allStatements.record(nanos);
+        if (nanos >= slowQueryThresholdNanos) {
+            slowQueryCount.increment();
+            SlowQuery entry = new SlowQuery(Instant.now(), nanos, sql,
+                    parameters == null ? "[]" : Arrays.toString(parameters));
+            synchronized (slowQueries) {
+                if (slowQueries.size() == SLOW_QUERY_LOG_SIZE) {
+                    slowQueries.removeFirst();
+                }
+                slowQueries.addLast(entry);
+            }
+        }
+    }
+
+    public void recordRows(String sql, long rows) {
+        statementStats(sql).rows.add(rows);
+    }
+
+    public void recordError(String sql, SQLException e) {
+        statementStats(sql).errors.increment();
+        String state = e.getSQLState() == null ? "unknown" : e.getSQLState();
+        errorsBySqlState.computeIfAbsent(state, k -> new LongAdder()).increment();
+    }
+
+    public void recordStatementCacheHit() {
+        statementCacheHits.increment();
+    }
+
+    public void recordStatementCacheMiss() {
+        statementCacheMisses.increment();
+    }
+
+    public void recordStatementCacheEviction() {
+        statementCacheEvictions.increment();
+    }
+
+    private StatementStats statementStats(String sql) {
+        StatementStats stats = statements.get(sql);
+        if (stats == null) {
+            String key = statements.size() < MAX_STATEMENTS ? sql : "other";
+            stats = statements.computeIfAbsent(key, k -> new StatementStats());
+        }
+        return stats;
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public void report(PrintStream out) {
+        report(out, true);
+    }
+
+    // withParameters false leaves the slow queries' bound values (usernames, dates) out of the report
+    public void report(PrintStream out, boolean withParameters) {
+        out.println("Commands:");
+        printHistogram(out, "all", allCommands);
+        new TreeMap<>(commands).forEach((name, histogram) -> printHistogram(out, name, histogram));
+
+        out.println("Connection acquire:");
+        printHistogram(out, "pool", connectionAcquire);
+
+        out.println("Statements:");
+        printHistogram(out, "all", allStatements);
+        new TreeMap<>(statements).forEach((sql, stats) -> {
+            printHistogram(out, sql, stats.latency);
+            out.println("      rows=" + stats.rows.sum() + " errors=" + stats.errors.sum());
+        });
+
+        out.printf("Statement cache: hits=%d misses=%d evictions=%d hit rate=%.1f%%%n", statementCacheHits.sum(),
+                statementCacheMisses.sum(), statementCacheEvictions.sum(), getStatementCacheHitRate() * 100);
+
+        out.println("Errors by SQLState:");
+        new TreeMap<>(errorsBySqlState).forEach((state, count) -> out.println("  " + state + ": " + count.sum()));
+
+        out.println("Slow queries (>= " + slowQueryThresholdNanos / 1_000_000 + "ms, " + slowQueryCount.sum() +
+                " total, most recent last):");
+        for (SlowQuery query : getSlowQueries()) {
+            out.printf("  %s %.3fms %s %s%n", query.getTime(), query.getNanos() / 1e6, query.getSql(),
+                    withParameters ? query.getParameters() : "[redacted]");
+        }
+    }
+
+    private static void printHistogram(PrintStream out, String name, LatencyHistogram histogram) {
+        out.printf("  %s: count=%d p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms%n", name, histogram.getCount(),
+                histogram.percentile(0.50) / 1e6, histogram.percentile(0.99) / 1e6,
+                histogram.percentile(0.999) / 1e6, histogram.getMax() / 1e6);
+    }
+
+    @Override
+    public long getCommandCount() {
+        return allCommands.getCount();
+    }
+
+    @Override
+    public double getCommandP50Millis() {
+        return allCommands.percentile(0.50) / 1e6;
+    }
+
+    @Override
+    public double getCommandP99Millis() {
+        return allCommands.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getCommandP999Millis() {
+        return allCommands.percentile(0.999) / 1e6;
+    }
+
+    @Override
+    public long getStatementCount() {
+        return allStatements.getCount();
+    }
+
+    @Override
+    public double getStatementP99Millis() {
+        return allStatements.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getConnectionAcquireP99Millis() {
+        return connectionAcquire.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public long getStatementErrorCount() {
+        long errors = 0;
+        for (Map.Entry<String, LongAdder> entry : errorsBySqlState.entrySet()) {
+            errors += entry.getValue().sum();
+        }
+        return errors;
+    }
+
+    @Override
+    public long getSlowQueryCount() {
+        return slowQueryCount.sum();
+    }
+
+    @Override
+    public double getStatementCacheHitRate() {
+        long hits = statementCacheHits.sum();
+        long total = hits + statementCacheMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String getReport() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        report(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    private static class StatementStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    public static class SlowQuery {
+        private final Instant time;
+        private final long nanos;
+        private final String sql;
+        private final String parameters;
+
+        private SlowQuery(Instant time, long nanos, String sql, String parameters) {
+            this.time = time;
+            this.nanos = nanos;
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        // Getters
+        public Instant getTime() {
+            return time;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getParameters() {
+            return parameters;
+        }
+    }
+}
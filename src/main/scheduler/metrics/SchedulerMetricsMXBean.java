@@ -0,0 +1,28 @@
+package scheduler.metrics;
+
+/**
+ * JMX view of the scheduler metrics, registered as scheduler:type=Metrics.
+ */
+public interface SchedulerMetricsMXBean {
+    long getCommandCount();
+
+    double getCommandP50Millis();
+
+    double getCommandP99Millis();
+
+    double getCommandP999Millis();
+
+    long getStatementCount();
+
+    double getStatementP99Millis();
+
+    double getConnectionAcquireP99Millis();
+
+    long getStatementErrorCount();
+
+    long getSlowQueryCount();
+
+    double getStatementCacheHitRate();
+
+    String getReport();
+}
@@ -0,0 +1,72 @@
+package scheduler.model;
+
+import java.sql.Date;
+
+public class Appointment {
+    private final int appointmentID;
+    private final String caregiverName;
+    private final String patientName;
+    private final Date time;
+    private final String vaccineName;
+
+    private Appointment(AppointmentBuilder builder) {
+        this.appointmentID = builder.appointmentID;
+        this.caregiverName = builder.caregiverName;
+        this.patientName = builder.patientName;
+        this.time = builder.time;
+        this.vaccineName = builder.vaccineName;
+    }
+
+    // Getters
+    public int getAppointmentID() {
+        return appointmentID;
+    }
+
+    public String getCaregiverName() {
+        return caregiverName;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public Date getTime() {
+        return time;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+
+    @Override
+    public String toString() {
+        return "Appointment{" +
+                "appointmentID=" + appointmentID +
+                ", caregiverName='" + caregiverName + '\'' +
+                ", patientName='" + patientName + '\'' +
+                ", time=" + time +
+                ", vaccineName='" + vaccineName + '\'' +
+                '}';
+    }
+
+    public static class AppointmentBuilder {
+        private final int appointmentID;
+        private final String caregiverName;
+        private final String patientName;
+        private final Date time;
+        private final String vaccineName;
+
+        public AppointmentBuilder(int appointmentID, String caregiverName, String patientName, Date time,
+                                  String vaccineName) {
+            this.appointmentID = appointmentID;
+            this.caregiverName = caregiverName;
+            this.patientName = patientName;
+            this.time = time;
+            this.vaccineName = vaccineName;
+        }
+
+        public Appointment build() {
+            return new Appointment(this);
+        }
+    }
+}
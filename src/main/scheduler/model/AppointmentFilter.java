@@ -0,0 +1,122 @@
+package scheduler.model;
+
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * One page of a show_appointments listing: an optional date range, a page size and the AppointmentID to
+ * continue after. Pages are ordered by AppointmentID descending, so the next page starts below the last id shown.
+ */
+public class AppointmentFilter {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 10_000;
+    // rows the driver fetches per round trip
+    private static final int MAX_FETCH_SIZE = 500;
+
+    private final Date from;
+    private final Date to;
+    private final int limit;
+    private final Integer after;
+
+    private AppointmentFilter(AppointmentFilterBuilder builder) {
+        this.from = builder.from;
+        this.to = builder.to;
+        this.limit = builder.limit;
+        this.after = builder.after;
+    }
+
+    // Getters
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public Integer getAfter() {
+        return after;
+    }
+
+    // Binds TOP, the owner and whichever optional predicates Queries.appointmentPage put into the statement
+    public void bind(PreparedStatement statement, String owner) throws SQLException {
+        int index = 1;
+        statement.setInt(index++, limit);
+        statement.setString(index++, owner);
+        if (after != null) {
+            statement.setInt(index++, after);
+        }
+        if (from != null) {
+            statement.setDate(index++, from);
+        }
+        if (to != null) {
+            statement.setDate(index, to);
+        }
+        statement.setFetchSize(Math.min(limit, MAX_FETCH_SIZE));
+    }
+
+    // A full page may have more rows behind it, tell the user how to get them
+    void printNextPage(PrintStream out, int rows, int lastID) {
+        if (rows < limit) {
+            return;
+        }
+        out.print("More appointments: show_appointments");
+        if (from != null) {
+            out.print(" --from ");
+            out.print(from);
+        }
+        if (to != null) {
+            out.print(" --to ");
+            out.print(to);
+        }
+        if (limit != DEFAULT_LIMIT) {
+            out.print(" --limit ");
+            out.print(limit);
+        }
+        out.print(" --after ");
+        out.println(lastID);
+    }
+
+    public static class AppointmentFilterBuilder {
+        private Date from = null;
+        private Date to = null;
+        private int limit = DEFAULT_LIMIT;
+        private Integer after = null;
+
+        public AppointmentFilterBuilder from(Date from) {
+            this.from = from;
+            return this;
+        }
+
+        public AppointmentFilterBuilder to(Date to) {
+            this.to = to;
+            return this;
+        }
+
+        public AppointmentFilterBuilder limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        public AppointmentFilterBuilder after(int after) {
+            this.after = after;
+            return this;
+        }
+
+        public AppointmentFilter build() {
+            if (limit <= 0 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+            }
+            if (from != null && to != null && to.before(from)) {
+                throw new IllegalArgumentException("Empty date range");
+            }
+            return new AppointmentFilter(this);
+        }
+    }
+}
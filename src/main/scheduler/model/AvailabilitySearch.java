@@ -0,0 +1,43 @@
+package scheduler.model;
+
+import scheduler.store.Stores;
+
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Availability questions that span many dates, each answered by one range lookup in the AvailabilityStore
+ * (one grouped query over Availabilities with the jdbc backend).
+ */
+public class AvailabilitySearch {
+    private AvailabilitySearch() {
+    }
+
+    // Streams "<date> Caregivers: <n>" for every date in [from, to] with at least one caregiver.
+    // Returns the number of dates printed.
+    public static int printCaregiverCounts(Date from, Date to, PrintStream out) throws SQLException {
+        int[] days = {0};
+        Stores.availabilities().forEachCountByDate(from, to, (date, count) -> {
+            out.print(date);
+            out.print(" Caregivers: ");
+            out.println(count);
+            days[0]++;
+        });
+        return days[0];
+    }
+
+    // Prints the earliest date on or after from with an available caregiver and how many there are.
+    // Returns that date, or null if there is none.
+    public static Date printNextAvailable(Date from, PrintStream out) throws SQLException {
+        Map.Entry<Date, Integer> next = Stores.availabilities().nextAvailable(from);
+        if (next == null) {
+            return null;
+        }
+        out.print(next.getKey());
+        out.print(" Caregivers: ");
+        out.println(next.getValue());
+        return next.getKey();
+    }
+}
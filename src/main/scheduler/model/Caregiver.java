@@ -1,10 +1,15 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
-import scheduler.util.Util;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.UsernameIndex;
+import scheduler.store.Stores;
+import scheduler.waitlist.Waitlist;
+import scheduler.util.HashingService;
 
-import java.sql.*;
-import java.util.Arrays;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
 
 public class Caregiver {
     private final String username;
@@ -37,61 +42,50 @@ public class Caregiver {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addCaregiver = "INSERT INTO Caregivers VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addCaregiver);
-            statement.setString(1, this.username);
-            statement.setBytes(2, this.salt);
-            statement.setBytes(3, this.hash);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Stores.caregivers().insert(this);
+        UsernameIndex.forCaregivers().added(this.username);
     }
 
-    public static void showAppointments(String caregiverName) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String getAppointmentsQuery = "SELECT A.AppointmentID, A.Vaccine, A.Time, A.PatientName FROM Appointments AS A WHERE A.CaregiverName = ? " +
-                "ORDER BY A.AppointmentID DESC";
+    // Streams one page of appointments, newest first, straight from the store to out
+    public static void showAppointments(String caregiverName, AppointmentFilter filter, PrintStream out) throws SQLException {
+        int[] rows = {0};
+        int[] lastID = {-1};
         try {
-            PreparedStatement statement = con.prepareStatement(getAppointmentsQuery);
-            statement.setString(1,caregiverName);
-            ResultSet appointments = statement.executeQuery();
-            while(appointments.next()) {
-                System.out.println("Appointment ID: " + appointments.getInt(1) + " Vaccine: " + appointments.getString(2) +
-                                    " Time: " + appointments.getDate(3) + " Patient: " + appointments.getString(4));
-            }
+            Stores.appointments().forEachOfCaregiver(caregiverName, filter, appointment -> {
+                lastID[0] = appointment.getAppointmentID();
+                out.print("Appointment ID: ");
+                out.print(lastID[0]);
+                out.print(" Vaccine: ");
+                out.print(appointment.getVaccineName());
+                out.print(" Time: ");
+                out.print(appointment.getTime());
+                out.print(" Patient: ");
+                out.println(appointment.getPatientName());
+                rows[0]++;
+            });
+            filter.printNextPage(out, rows[0], lastID[0]);
         } catch (SQLException e) {
-            System.out.println("Please try again!");
+            out.println("Please try again!");
             throw new SQLException();
-        } finally {
-            cm.closeConnection();
         }
     }
 
     public void uploadAvailability(Date d) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        Stores.availabilities().add(d, this.username);
+        AvailabilityIndex.getInstance().add(d, this.username);
+        Waitlist.getInstance().capacityAdded(d);
+    }
 
-        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addAvailability);
-            statement.setDate(1, d);
-            statement.setString(2, this.username);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+    // Inserts availabilities for all given dates at once.
+    // Dates the caregiver is already available on are skipped. Returns the number of rows inserted.
+    public int uploadAvailability(List<Date> dates) throws SQLException {
+        List<Date> inserted = Stores.availabilities().addAll(this.username, dates);
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        for (Date d : inserted) {
+            index.add(d, this.username);
         }
+        Waitlist.getInstance().capacityAdded(inserted);
+        return inserted.size();
     }
 
     public static class CaregiverBuilder {
@@ -122,35 +116,19 @@ public class Caregiver {
         }
 
         public Caregiver get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getCaregiver = "SELECT Salt, Hash FROM Caregivers WHERE Username = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getCaregiver);
-                statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
-                        return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Caregiver(this);
-                    }
-                }
+            Caregiver stored = Stores.caregivers().get(this.username);
+            if (stored == null) {
+                return null;
+            }
+            byte[] salt = stored.getSalt();
+            byte[] hash = stored.getHash();
+            // check if the password matches, hashing runs on the bounded hashing pool
+            if (!HashingService.getInstance().verifyOffThread(password.toCharArray(), salt, hash)) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            this.salt = salt;
+            this.hash = hash;
+            return new Caregiver(this);
         }
     }
 }
@@ -1,10 +1,10 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
+import scheduler.cache.VaccineInventory;
+import scheduler.journal.ReservationJournal;
+import scheduler.store.Stores;
+import scheduler.waitlist.Waitlist;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class Vaccine {
@@ -31,20 +31,9 @@ public class Vaccine {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addDoses);
-            statement.setString(1, this.vaccineName);
-            statement.setInt(2, this.availableDoses);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Stores.vaccines().insert(this);
+        VaccineInventory.getInstance().created(this.vaccineName, this.availableDoses);
+        Waitlist.getInstance().dosesAdded(this.vaccineName);
     }
 
     // Increment the available doses
@@ -52,44 +41,46 @@ public class Vaccine {
         if (num <= 0) {
             throw new IllegalArgumentException("Argument cannot be negative!");
         }
-        this.availableDoses += num;
-
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
-        try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        if (inventory.isWriteBehind()) {
+            long journalSeq = ReservationJournal.getInstance().logDoses(this.vaccineName, num);
+            inventory.trackIncrement(journalSeq);
+            inventory.release(this.vaccineName, num);
+            this.availableDoses = inventory.getDoses(this.vaccineName);
+            Waitlist.getInstance().dosesAdded(this.vaccineName);
+            return;
         }
+
+        Stores.vaccines().addDoses(this.vaccineName, num);
+        this.availableDoses += num;
+        inventory.applied(this.vaccineName, num);
+        Waitlist.getInstance().dosesAdded(this.vaccineName);
     }
 
     // Decrement the available doses
     public void decreaseAvailableDoses(int num) throws SQLException {
-        if (this.availableDoses - num < 0) {
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        if (inventory.isWriteBehind()) {
+            if (!inventory.tryReserve(this.vaccineName, num)) {
+                throw new IllegalArgumentException("Not enough available doses!");
+            }
+            long journalSeq;
+            try {
+                journalSeq = ReservationJournal.getInstance().logDoses(this.vaccineName, -num);
+            } catch (SQLException e) {
+                inventory.release(this.vaccineName, num);
+                throw e;
+            }
+            inventory.trackDecrement(journalSeq);
+            this.availableDoses = inventory.getDoses(this.vaccineName);
+            return;
+        }
+
+        if (!Stores.vaccines().removeDoses(this.vaccineName, num)) {
             throw new IllegalArgumentException("Not enough available doses!");
         }
         this.availableDoses -= num;
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
-        try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        inventory.applied(this.vaccineName, -num);
     }
 
     @Override
@@ -123,24 +114,20 @@ public class Vaccine {
         }
 
         public Vaccine get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
+            // known vaccines are answered from the in-process inventory
+            int inventoryDoses = VaccineInventory.getInstance().getDoses(this.vaccineName);
+            if (inventoryDoses >= 0) {
+                this.availableDoses = inventoryDoses;
+                return new Vaccine(this);
+            }
 
-            String getVaccine = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getVaccine);
-                statement.setString(1, this.vaccineName);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    this.availableDoses = resultSet.getInt("Doses");
-                    return new Vaccine(this);
-                }
+            Vaccine stored = Stores.vaccines().get(this.vaccineName);
+            if (stored == null) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            this.availableDoses = stored.getAvailableDoses();
+            VaccineInventory.getInstance().created(this.vaccineName, this.availableDoses);
+            return new Vaccine(this);
         }
     }
 }
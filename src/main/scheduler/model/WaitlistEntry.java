@@ -0,0 +1,83 @@
+package scheduler.model;
+
+import java.sql.Date;
+
+public class WaitlistEntry {
+    private final int waitlistID;
+    private final String patientName;
+    private final String vaccineName;
+    private final Date from;
+    private final Date to;
+    private final long createdAt;
+
+    private WaitlistEntry(WaitlistEntryBuilder builder) {
+        this.waitlistID = builder.waitlistID;
+        this.patientName = builder.patientName;
+        this.vaccineName = builder.vaccineName;
+        this.from = builder.from;
+        this.to = builder.to;
+        this.createdAt = builder.createdAt;
+    }
+
+    // Getters
+    public int getWaitlistID() {
+        return waitlistID;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+
+    // the patient takes any date from from to to, both included
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    // epoch millis when the patient joined the waitlist
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "WaitlistEntry{" +
+                "waitlistID=" + waitlistID +
+                ", patientName='" + patientName + '\'' +
+                ", vaccineName='" + vaccineName + '\'' +
+                ", from=" + from +
+                ", to=" + to +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+
+    public static class WaitlistEntryBuilder {
+        private final int waitlistID;
+        private final String patientName;
+        private final String vaccineName;
+        private final Date from;
+        private final Date to;
+        private final long createdAt;
+
+        public WaitlistEntryBuilder(int waitlistID, String patientName, String vaccineName, Date from, Date to,
+                                    long createdAt) {
+            this.waitlistID = waitlistID;
+            this.patientName = patientName;
+            this.vaccineName = vaccineName;
+            this.from = from;
+            this.to = to;
+            this.createdAt = createdAt;
+        }
+
+        public WaitlistEntry build() {
+            return new WaitlistEntry(this);
+        }
+    }
+}
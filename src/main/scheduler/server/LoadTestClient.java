@@ -0,0 +1,114 @@
+package scheduler.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens many concurrent sessions against a SchedulerServer and replays a command script in each of them.
+ *
+ * Usage: LoadTestClient <host> <port> <sessions> <iterations> <script>
+ *
+ * Every occurrence of {session} in the script is replaced with the session number, so each session can
+ * create and log in as its own user.
+ */
+public class LoadTestClient {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5) {
+            System.out.println("Usage: LoadTestClient <host> <port> <sessions> <iterations> <script>");
+            return;
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int sessions = Integer.parseInt(args[2]);
+        int iterations = Integer.parseInt(args[3]);
+        List<String> script = Files.readAllLines(Paths.get(args[4]), StandardCharsets.UTF_8);
+
+        ConcurrentLinkedQueue<long[]> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong failures = new AtomicLong();
+        long start = System.nanoTime();
+        ExecutorService executor = SchedulerServer.newSessionExecutor();
+        for (int i = 0; i < sessions; i++) {
+            int sessionNumber = i;
+            executor.execute(() -> {
+                try {
+                    latencies.add(runSession(host, port, sessionNumber, iterations, script));
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        long elapsed = System.nanoTime() - start;
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.println("Sessions: " + sessions + " (" + failures.get() + " failed)");
+        System.out.println("Commands: " + all.length + " in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+        if (all.length > 0) {
+            System.out.printf("Throughput: %.1f commands/s%n", all.length / (elapsed / 1e9));
+            System.out.printf("Latency p50: %.3fms p99: %.3fms max: %.3fms%n",
+                    percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[all.length - 1] / 1e6);
+        }
+    }
+
+    private static long[] runSession(String host, int port, int sessionNumber, int iterations, List<String> script)
+            throws IOException {
+        List<Long> latencies = new ArrayList<>();
+        try (Socket socket = new Socket(host, port);
+             Reader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(socket.getOutputStream(), false, StandardCharsets.UTF_8)) {
+            socket.setTcpNoDelay(true);
+            awaitPrompt(in);
+            for (int i = 0; i < iterations; i++) {
+                for (String line : script) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    long begin = System.nanoTime();
+                    out.print(line.replace("{session}", String.valueOf(sessionNumber)) + "\n");
+                    out.flush();
+                    awaitPrompt(in);
+                    latencies.add(System.nanoTime() - begin);
+                }
+            }
+            out.print("quit\n");
+            out.flush();
+        }
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Reads the server's output until a "> " prompt appears at the start of a line
+    private static void awaitPrompt(Reader in) throws IOException {
+        boolean lineStart = true;
+        boolean sawMarker = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (sawMarker && c == ' ') {
+                return;
+            }
+            sawMarker = lineStart && c == '>';
+            lineStart = c == '\n';
+        }
+        throw new IOException("Server closed the connection");
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
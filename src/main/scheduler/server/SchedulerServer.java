@@ -0,0 +1,96 @@
+package scheduler.server;
+
+import scheduler.Scheduler;
+import scheduler.Session;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the Scheduler command grammar over TCP. Every client connection gets its own Session and runs
+ * on its own (virtual, when available) thread, so one JVM can hold thousands of logged-in users.
+ *
+ * The server writes "> " at the start of a line whenever it is ready for the next command.
+ */
+public class SchedulerServer {
+    private static final int BACKLOG = 4096;
+
+    private final int port;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    public SchedulerServer(int port) {
+        this.port = port;
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public void serve() throws IOException {
+        ExecutorService executor = newSessionExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(port, BACKLOG)) {
+            System.out.println("Scheduler server listening on port " + serverSocket.getLocalPort());
+            while (true) {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> handle(socket));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(Socket socket) {
+        activeSessions.incrementAndGet();
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(new BufferedOutputStream(s.getOutputStream()), false,
+                     StandardCharsets.UTF_8)) {
+            s.setTcpNoDelay(true);
+            Session session = new Session(out, true);
+            out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
+            while (true) {
+                out.print("> ");
+                out.flush();
+                String line = in.readLine();
+                if (line == null || !execute(session, line)) {
+                    break;
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // the client went away, nothing left to clean up but the socket
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    // A command that throws, e.g. on a number it can't parse, is reported to the client and the session goes on
+    private static boolean execute(Session session, String line) {
+        try {
+            return Scheduler.execute(session, line);
+        } catch (RuntimeException e) {
+            session.getOut().println("Please try again! " + e);
+            return true;
+        }
+    }
+
+    // One virtual thread per task on Java 21+, falling back to a cached platform thread pool on older JVMs
+    static ExecutorService newSessionExecutor() {
+        try {
+            Method virtualThreads = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreads.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
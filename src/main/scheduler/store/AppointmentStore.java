@@ -0,0 +1,60 @@
+package scheduler.store;
+
+import scheduler.assignment.CaregiverAssignmentStrategy;
+import scheduler.model.Appointment;
+import scheduler.model.AppointmentFilter;
+import scheduler.model.WaitlistEntry;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Appointments, and the reserve and cancel steps that move a caregiver's slot and a dose along with them.
+ */
+public interface AppointmentStore {
+    // Which side of an appointment a user is on
+    enum Role {
+        PATIENT,
+        CAREGIVER
+    }
+
+    // Messages of the IllegalArgumentExceptions thrown by reserve
+    String NO_CAREGIVER = "No Caregiver is available";
+    String NO_DOSES = "Not enough available doses!";
+    String NOT_WAITING = "No longer on the waitlist";
+
+    // Atomically takes a caregiver available on the date, in the strategy's order, and one dose of the vaccine,
+    // and books them for the patient. Throws IllegalArgumentException with the reason if either is missing.
+    // Leaves the caches to the caller, except for doses held in a write-behind VaccineInventory.
+    Appointment reserve(String patientName, Date date, String vaccineName, CaregiverAssignmentStrategy strategy)
+            throws SQLException;
+
+    // Like reserve for the entry's patient and vaccine, and takes the entry off the WaitlistStore in the same
+    // step, so a waiter is booked at most once. Throws IllegalArgumentException(NOT_WAITING) if it is gone.
+    Appointment reserveWaitlisted(WaitlistEntry entry, Date date, CaregiverAssignmentStrategy strategy)
+            throws SQLException;
+
+    // Atomically deletes those of the appointments that belong to the owner, makes their caregivers available
+    // again and returns their doses. Ids that don't exist, were cancelled already or belong to somebody else are
+    // skipped, so cancelling twice restores nothing twice. Returns the appointments that were cancelled.
+    List<Appointment> cancel(Role ownerRole, String owner, List<Integer> appointmentIDs) throws SQLException;
+
+    // Returns null if there is no such appointment
+    Appointment get(int appointmentID) throws SQLException;
+
+    // Returns -1 if the caregiver has no appointment that day
+    int getID(String caregiverName, Date date) throws SQLException;
+
+    // Hands one page of the patient's appointments to consumer, newest first
+    void forEachOfPatient(String patientName, AppointmentFilter filter, Consumer<Appointment> consumer)
+            throws SQLException;
+
+    void forEachOfCaregiver(String caregiverName, AppointmentFilter filter, Consumer<Appointment> consumer)
+            throws SQLException;
+
+    // Appointments per caregiver in [start, end)
+    Map<String, Integer> countByCaregiver(Date start, Date end) throws SQLException;
+}
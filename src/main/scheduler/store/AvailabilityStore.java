@@ -0,0 +1,32 @@
+package scheduler.store;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Which caregivers are available on which dates, at most once per caregiver and date.
+ */
+public interface AvailabilityStore {
+    // Throws SQLException if the caregiver is already available that day
+    void add(Date date, String caregiver) throws SQLException;
+
+    // Adds every date the caregiver isn't available on yet, atomically. Returns the dates that were added.
+    List<Date> addAll(String caregiver, List<Date> dates) throws SQLException;
+
+    // Caregivers available on the date, sorted by username
+    NavigableSet<String> getCaregivers(Date date) throws SQLException;
+
+    Map<LocalDate, NavigableSet<String>> getAll() throws SQLException;
+
+    // Hands the number of caregivers to consumer for every date in [from, to] that has at least one, earliest
+    // first, as the dates are read
+    void forEachCountByDate(Date from, Date to, BiConsumer<Date, Integer> consumer) throws SQLException;
+
+    // The earliest date on or after from with a caregiver and how many there are, or null
+    Map.Entry<Date, Integer> nextAvailable(Date from) throws SQLException;
+}
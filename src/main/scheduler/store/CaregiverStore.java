@@ -0,0 +1,22 @@
+package scheduler.store;
+
+import scheduler.model.Caregiver;
+
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Caregiver accounts by username. Stores.caregivers() returns the one chosen at startup.
+ */
+public interface CaregiverStore {
+    // Throws SQLException if the username is taken
+    void insert(Caregiver caregiver) throws SQLException;
+
+    // Returns the stored salt and hash without checking any password, or null if there is no such caregiver
+    Caregiver get(String username) throws SQLException;
+
+    boolean exists(String username) throws SQLException;
+
+    // Streams every username, for building the UsernameIndex
+    void forEachUsername(Consumer<String> consumer) throws SQLException;
+}
@@ -0,0 +1,431 @@
+package scheduler.store;
+
+import scheduler.assignment.CaregiverAssignmentStrategy;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.db.Queries;
+import scheduler.journal.ReservationJournal;
+import scheduler.model.Appointment;
+import scheduler.model.AppointmentFilter;
+import scheduler.model.WaitlistEntry;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Appointments in SQL Server. reserve and cancel are single transactions that also journal themselves and,
+ * with a write-behind VaccineInventory, take or return the dose in memory instead of in the Vaccines table.
+ */
+public class JdbcAppointmentStore implements AppointmentStore {
+    // ids per cancel statement, SQL Server allows 2100 parameters
+    private static final int MAX_CANCEL_BATCH = 1000;
+    // the statement sizes a chunk is padded to, the last one is MAX_CANCEL_BATCH
+    private static final int[] CANCEL_BATCH_SIZES = {1, 10, 100, MAX_CANCEL_BATCH};
+
+    // Candidates come from the availability index; if none of them can be claimed the index may be stale,
+    // so the date is read once more inside the transaction.
+    @Override
+    public Appointment reserve(String patientName, Date date, String vaccineName,
+                               CaregiverAssignmentStrategy strategy) throws SQLException {
+        return reserve(patientName, date, vaccineName, strategy, 0);
+    }
+
+    @Override
+    public Appointment reserveWaitlisted(WaitlistEntry entry, Date date, CaregiverAssignmentStrategy strategy)
+            throws SQLException {
+        return reserve(entry.getPatientName(), date, entry.getVaccineName(), strategy, entry.getWaitlistID());
+    }
+
+    // waitlistID 0 books without a waitlist entry
+    private Appointment reserve(String patientName, Date date, String vaccineName,
+                                CaregiverAssignmentStrategy strategy, int waitlistID) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        boolean writeBehind = inventory.isWriteBehind();
+        ReservationJournal journal = ReservationJournal.getInstance();
+        boolean doseHeld = false;
+        long journalSeq = 0;
+        boolean committing = false;
+        try {
+            cm.beginTransaction();
+
+            // only one transaction gets to delete the entry, any other one stops here
+            if (waitlistID != 0 && !JdbcWaitlistStore.remove(waitlistID, con)) {
+                cm.rollback();
+                throw new IllegalArgumentException(NOT_WAITING);
+            }
+
+            // claim a caregiver slot from the candidates in the availability index
+            AvailabilityIndex index = AvailabilityIndex.getInstance();
+            String desiredCaregiver;
+            try (PreparedStatement claimAvailabilityStatement = con.prepareStatement(Queries.CLAIM_AVAILABILITY)) {
+                Set<String> tried = new HashSet<>();
+                desiredCaregiver = claimCaregiver(claimAvailabilityStatement, date,
+                        strategy.order(date, index.getCaregivers(date)), tried);
+                if (desiredCaregiver == null) {
+                    // the index may be stale if another process wrote availabilities, check the database once
+                    desiredCaregiver = claimCaregiver(claimAvailabilityStatement, date, strategy.order(date,
+                            index.replace(date, JdbcAvailabilityStore.getCaregivers(date, con))), tried);
+                }
+            }
+            if (desiredCaregiver == null) {
+                cm.rollback();
+                throw new IllegalArgumentException(NO_CAREGIVER);
+            }
+
+            // claim a dose: neither the in-memory counter nor the conditional update goes below zero
+            boolean doseClaimed;
+            if (writeBehind) {
+                // the inventory is authoritative and flushes the decrement to Vaccines in the background
+                doseHeld = inventory.tryReserve(vaccineName, 1);
+                doseClaimed = doseHeld;
+            } else {
+                try (PreparedStatement claimDoseStatement = con.prepareStatement(Queries.REMOVE_DOSES)) {
+                    claimDoseStatement.setInt(1, 1);
+                    claimDoseStatement.setString(2, vaccineName);
+                    claimDoseStatement.setInt(3, 1);
+                    doseClaimed = claimDoseStatement.executeUpdate() == 1;
+                }
+            }
+            if (!doseClaimed) {
+                cm.rollback();
+                throw new IllegalArgumentException(NO_DOSES);
+            }
+
+            int appointmentID = -1;
+            try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_APPOINTMENT,
+                    Statement.RETURN_GENERATED_KEYS)) {
+                statement.setString(1, desiredCaregiver);
+                statement.setString(2, patientName);
+                statement.setDate(3, date);
+                statement.setString(4, vaccineName);
+                statement.executeUpdate();
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        appointmentID = generatedKeys.getInt(1);
+                    }
+                }
+            }
+
+            // once this record is durable a crash can't lose the booking or, in write-behind mode, its dose
+            journalSeq = journal.logReserve(appointmentID, date.toLocalDate(), desiredCaregiver, patientName,
+                    vaccineName, writeBehind ? -1 : 0);
+            committing = true;
+            cm.commit();
+            doseHeld = false;
+            journal.applied(journalSeq, !writeBehind);
+            if (writeBehind) {
+                inventory.trackDecrement(journalSeq);
+            }
+            return new Appointment.AppointmentBuilder(appointmentID, desiredCaregiver, patientName, date,
+                    vaccineName).build();
+        } catch (SQLException e) {
+            cm.rollback();
+            if (doseHeld) {
+                inventory.release(vaccineName, 1);
+            }
+            // if the commit itself failed it may still have gone through, recovery checks the database
+            if (!committing) {
+                journal.aborted(journalSeq);
+            }
+            e.printStackTrace();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Tries each untried candidate in order. The conditional delete only succeeds for the one transaction that
+    // still sees the row, everyone else gets a row count of 0 and moves on to the next caregiver.
+    private static String claimCaregiver(PreparedStatement claimAvailabilityStatement, Date date,
+                                         Iterable<String> candidates, Set<String> tried) throws SQLException {
+        for (String caregiver : candidates) {
+            if (!tried.add(caregiver)) {
+                continue;
+            }
+            claimAvailabilityStatement.setDate(1, date);
+            claimAvailabilityStatement.setString(2, caregiver);
+            if (claimAvailabilityStatement.executeUpdate() == 1) {
+                return caregiver;
+            }
+            // somebody else booked this slot
+            AvailabilityIndex.getInstance().remove(date, caregiver);
+        }
+        return null;
+    }
+
+    // Against SQL Server every chunk of ids is one DELETE ... OUTPUT batch, so a cancel costs one round trip plus
+    // the commit no matter how many appointments it covers. Other databases select the owner's rows and delete
+    // them one by one. Either way all chunks share the transaction.
+    @Override
+    public List<Appointment> cancel(Role ownerRole, String owner, List<Integer> appointmentIDs)
+            throws SQLException {
+        List<Appointment> cancelled = new ArrayList<>();
+        if (appointmentIDs.isEmpty()) {
+            return cancelled;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        VaccineInventory inventory = VaccineInventory.getInstance();
+        boolean writeBehind = inventory.isWriteBehind();
+        ReservationJournal journal = ReservationJournal.getInstance();
+        String ownerColumn = ownerRole == Role.PATIENT ? "PatientName" : "CaregiverName";
+        try {
+            boolean sqlServer = con.getMetaData().getDatabaseProductName().toLowerCase().contains("sql server");
+            cm.beginTransaction();
+            for (int start = 0; start < appointmentIDs.size(); start += MAX_CANCEL_BATCH) {
+                List<Integer> chunk = appointmentIDs.subList(start,
+                        Math.min(start + MAX_CANCEL_BATCH, appointmentIDs.size()));
+                if (sqlServer) {
+                    cancelChunk(con, ownerColumn, owner, chunk, !writeBehind, cancelled);
+                } else {
+                    cancelChunkPortable(con, ownerColumn, owner, chunk, cancelled);
+                }
+            }
+            if (!sqlServer && !cancelled.isEmpty()) {
+                restore(con, cancelled, !writeBehind);
+            }
+            if (cancelled.isEmpty()) {
+                cm.rollback();
+                return cancelled;
+            }
+
+            long[] journalSeqs = journal.logCancels(cancelled, writeBehind ? 1 : 0);
+            cm.commit();
+            for (int i = 0; i < journalSeqs.length; i++) {
+                journal.applied(journalSeqs[i], !writeBehind);
+                if (writeBehind) {
+                    inventory.trackIncrement(journalSeqs[i]);
+                    inventory.release(cancelled.get(i).getVaccineName(), 1);
+                }
+            }
+            return cancelled;
+        } catch (SQLException e) {
+            // a journaled cancel whose commit failed is settled by recovery, which checks the Appointments table
+            cm.rollback();
+            e.printStackTrace();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Rounds a chunk up to one of a few statement sizes by repeating its last id, so cancels of any size share
+    // four statements in the statement cache and the metrics instead of one per size
+    private static int paddedSize(int count) {
+        for (int size : CANCEL_BATCH_SIZES) {
+            if (count <= size) {
+                return size;
+            }
+        }
+        return count;
+    }
+
+    // Binds the owner and the chunk's ids, padded to size
+    private static void bindChunk(PreparedStatement statement, String owner, List<Integer> chunk, int size)
+            throws SQLException {
+        statement.setString(1, owner);
+        for (int i = 0; i < size; i++) {
+            statement.setInt(i + 2, chunk.get(Math.min(i, chunk.size() - 1)));
+        }
+    }
+
+    private static void cancelChunk(Connection con, String ownerColumn, String owner, List<Integer> chunk,
+                                    boolean returnDoses, List<Appointment> cancelled) throws SQLException {
+        int size = paddedSize(chunk.size());
+        try (PreparedStatement statement = con.prepareStatement(
+                Queries.cancelAppointments(ownerColumn, size, returnDoses))) {
+            bindChunk(statement, owner, chunk, size);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    cancelled.add(readCancelled(resultSet));
+                }
+            }
+        }
+    }
+
+    // Only rows whose delete removed exactly one row count as cancelled, so a cancel racing this one for the
+    // same appointment can't give its slot and dose back twice
+    private static void cancelChunkPortable(Connection con, String ownerColumn, String owner, List<Integer> chunk,
+                                            List<Appointment> cancelled) throws SQLException {
+        int size = paddedSize(chunk.size());
+        List<Appointment> owned = new ArrayList<>();
+        try (PreparedStatement statement = con.prepareStatement(Queries.ownedAppointments(ownerColumn, size))) {
+            bindChunk(statement, owner, chunk, size);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    owned.add(readCancelled(resultSet));
+                }
+            }
+        }
+        try (PreparedStatement statement = con.prepareStatement(Queries.DELETE_APPOINTMENT)) {
+            for (Appointment appointment : owned) {
+                statement.setInt(1, appointment.getAppointmentID());
+                if (statement.executeUpdate() == 1) {
+                    cancelled.add(appointment);
+                }
+            }
+        }
+    }
+
+    // What the T-SQL batch does after its DELETE: the slots go back unless the caregiver uploaded the date
+    // again, and the doses go back unless write-behind returns them in memory
+    private static void restore(Connection con, List<Appointment> cancelled, boolean returnDoses)
+            throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_AVAILABILITY_IF_ABSENT)) {
+            for (Appointment appointment : cancelled) {
+                statement.setDate(1, appointment.getTime());
+                statement.setString(2, appointment.getCaregiverName());
+                statement.setDate(3, appointment.getTime());
+                statement.setString(4, appointment.getCaregiverName());
+                statement.setString(5, appointment.getCaregiverName());
+                statement.setDate(6, appointment.getTime());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        if (!returnDoses) {
+            return;
+        }
+        Map<String, Integer> doses = new HashMap<>();
+        for (Appointment appointment : cancelled) {
+            doses.merge(appointment.getVaccineName(), 1, Integer::sum);
+        }
+        try (PreparedStatement statement = con.prepareStatement(Queries.ADD_DOSES)) {
+            for (Map.Entry<String, Integer> entry : doses.entrySet()) {
+                statement.setInt(1, entry.getValue());
+                statement.setString(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    // Columns AppointmentID, Time, CaregiverName, PatientName, Vaccine
+    private static Appointment readCancelled(ResultSet resultSet) throws SQLException {
+        return new Appointment.AppointmentBuilder(resultSet.getInt(1), resultSet.getString(3),
+                resultSet.getString(4), resultSet.getDate(2), resultSet.getString(5)).build();
+    }
+
+    @Override
+    public Appointment get(int appointmentID) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            return get(appointmentID, con);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    private static Appointment get(int appointmentID, Connection con) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_APPOINTMENT)) {
+            statement.setInt(1, appointmentID);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new Appointment.AppointmentBuilder(appointmentID, resultSet.getString("CaregiverName"),
+                        resultSet.getString("PatientName"), resultSet.getDate("Time"),
+                        resultSet.getString("Vaccine")).build();
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        }
+    }
+
+    @Override
+    public int getID(String caregiverName, Date date) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_APPOINTMENT_ID)) {
+            statement.setString(1, caregiverName);
+            statement.setDate(2, date);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEachOfPatient(String patientName, AppointmentFilter filter, Consumer<Appointment> consumer)
+            throws SQLException {
+        forEach("PatientName", "CaregiverName", patientName, filter, consumer);
+    }
+
+    @Override
+    public void forEachOfCaregiver(String caregiverName, AppointmentFilter filter, Consumer<Appointment> consumer)
+            throws SQLException {
+        forEach("CaregiverName", "PatientName", caregiverName, filter, consumer);
+    }
+
+    // Streams the page straight from the result set, nothing is collected
+    private static void forEach(String ownerColumn, String otherColumn, String owner, AppointmentFilter filter,
+                                Consumer<Appointment> consumer) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        String getAppointmentsQuery = Queries.appointmentPage(ownerColumn, otherColumn,
+                filter.getAfter() != null, filter.getFrom() != null, filter.getTo() != null);
+        boolean ownerIsPatient = ownerColumn.equals("PatientName");
+        try (PreparedStatement statement = con.prepareStatement(getAppointmentsQuery)) {
+            filter.bind(statement, owner);
+            try (ResultSet appointments = statement.executeQuery()) {
+                while (appointments.next()) {
+                    String other = appointments.getString(4);
+                    consumer.accept(new Appointment.AppointmentBuilder(appointments.getInt(1),
+                            ownerIsPatient ? other : owner, ownerIsPatient ? owner : other, appointments.getDate(3),
+                            appointments.getString(2)).build());
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> countByCaregiver(Date start, Date end) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.COUNT_CAREGIVER_BOOKINGS)) {
+            statement.setDate(1, start);
+            statement.setDate(2, end);
+            Map<String, Integer> counts = new HashMap<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    counts.put(resultSet.getString(1), resultSet.getInt(2));
+                }
+            }
+            return counts;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
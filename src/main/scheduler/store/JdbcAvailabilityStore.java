@@ -0,0 +1,179 @@
+package scheduler.store;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.Queries;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+public class JdbcAvailabilityStore implements AvailabilityStore {
+    private static final int FETCH_SIZE = 500;
+
+    @Override
+    public void add(Date date, String caregiver) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        int inserted;
+        try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_AVAILABILITY_IF_NOT_BOOKED)) {
+            statement.setDate(1, date);
+            statement.setString(2, caregiver);
+            statement.setString(3, caregiver);
+            statement.setDate(4, date);
+            inserted = statement.executeUpdate();
+            ConnectionManager.recordWrite();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+        if (inserted == 0) {
+            throw new SQLException(caregiver + " is booked on " + date);
+        }
+    }
+
+    // One batch in one transaction
+    @Override
+    public List<Date> addAll(String caregiver, List<Date> dates) throws SQLException {
+        List<Date> added = new ArrayList<>();
+        if (dates.isEmpty()) {
+            return added;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+        try {
+            cm.beginTransaction();
+            int[] updateCounts;
+            try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_AVAILABILITY_IF_ABSENT)) {
+                for (Date d : dates) {
+                    statement.setDate(1, d);
+                    statement.setString(2, caregiver);
+                    statement.setDate(3, d);
+                    statement.setString(4, caregiver);
+                    statement.setString(5, caregiver);
+                    statement.setDate(6, d);
+                    statement.addBatch();
+                }
+                updateCounts = statement.executeBatch();
+            }
+            cm.commit();
+
+            for (int i = 0; i < updateCounts.length; i++) {
+                if (updateCounts[i] > 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                    added.add(dates.get(i));
+                }
+            }
+            return added;
+        } catch (SQLException e) {
+            cm.rollback();
+            e.printStackTrace();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public NavigableSet<String> getCaregivers(Date date) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            return getCaregivers(date, con);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Reads the date on the caller's connection, e.g. inside its transaction
+    static NavigableSet<String> getCaregivers(Date date, Connection con) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_AVAILABLE_CAREGIVERS)) {
+            NavigableSet<String> caregivers = new TreeSet<>();
+            statement.setDate(1, date);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    caregivers.add(resultSet.getString(1));
+                }
+            }
+            return caregivers;
+        } catch (SQLException e) {
+            throw new SQLException();
+        }
+    }
+
+    @Override
+    public Map<LocalDate, NavigableSet<String>> getAll() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_ALL_AVAILABILITIES);
+             ResultSet resultSet = statement.executeQuery()) {
+            Map<LocalDate, NavigableSet<String>> all = new HashMap<>();
+            while (resultSet.next()) {
+                all.computeIfAbsent(resultSet.getDate(1).toLocalDate(), d -> new TreeSet<>())
+                        .add(resultSet.getString(2));
+            }
+            return all;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // One grouped query over the date range, handed on row by row
+    @Override
+    public void forEachCountByDate(Date from, Date to, BiConsumer<Date, Integer> consumer) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.COUNT_AVAILABLE_CAREGIVERS_BY_DATE)) {
+            statement.setDate(1, from);
+            statement.setDate(2, to);
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getDate(1), resultSet.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Map.Entry<Date, Integer> nextAvailable(Date from) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.NEXT_AVAILABLE_DATE)) {
+            statement.setDate(1, from);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(resultSet.getDate(1), resultSet.getInt(2));
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package scheduler.store;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.Queries;
+import scheduler.model.Patient;
+import scheduler.util.Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+public class JdbcPatientStore implements PatientStore {
+    private static final int FETCH_SIZE = 1000;
+
+    @Override
+    public void insert(Patient patient) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_PATIENT)) {
+            statement.setString(1, patient.getUsername());
+            statement.setBytes(2, patient.getSalt());
+            statement.setBytes(3, patient.getHash());
+            statement.executeUpdate();
+            ConnectionManager.recordWrite();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Patient get(String username) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_PATIENT)) {
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                // we need to call Util.trim() to get rid of the paddings,
+                // try to remove the use of Util.trim() and you'll see :)
+                return new Patient.PatientBuilder(username, resultSet.getBytes("Salt"),
+                        Util.trim(resultSet.getBytes("Hash"))).build();
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public boolean exists(String username) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createReadConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.PATIENT_EXISTS)) {
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> consumer) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.PATIENT_USERNAMES)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
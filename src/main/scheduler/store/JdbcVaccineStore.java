@@ -0,0 +1,132 @@
+package scheduler.store;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.Queries;
+import scheduler.model.Vaccine;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class JdbcVaccineStore implements VaccineStore {
+    @Override
+    public void insert(Vaccine vaccine) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_VACCINE)) {
+            statement.setString(1, vaccine.getVaccineName());
+            statement.setInt(2, vaccine.getAvailableDoses());
+            statement.executeUpdate();
+            ConnectionManager.recordWrite();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Vaccine get(String vaccineName) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_VACCINE)) {
+            statement.setString(1, vaccineName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new Vaccine.VaccineBuilder(vaccineName, resultSet.getInt("Doses")).build();
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> getAll() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_ALL_VACCINES);
+             ResultSet resultSet = statement.executeQuery()) {
+            Map<String, Integer> all = new TreeMap<>();
+            while (resultSet.next()) {
+                all.put(resultSet.getString(1), resultSet.getInt(2));
+            }
+            return all;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // relative update so concurrent add_doses calls can't overwrite each other
+    @Override
+    public void addDoses(String vaccineName, int num) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.ADD_DOSES)) {
+            statement.setInt(1, num);
+            statement.setString(2, vaccineName);
+            statement.executeUpdate();
+            ConnectionManager.recordWrite();
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // conditional update so the count never goes below zero
+    @Override
+    public boolean removeDoses(String vaccineName, int num) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.REMOVE_DOSES)) {
+            statement.setInt(1, num);
+            statement.setString(2, vaccineName);
+            statement.setInt(3, num);
+            boolean removed = statement.executeUpdate() == 1;
+            ConnectionManager.recordWrite();
+            return removed;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void applyDeltas(Map<String, Integer> deltas) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            cm.beginTransaction();
+            try (PreparedStatement statement = con.prepareStatement(Queries.ADD_DOSES)) {
+                for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+                    statement.setInt(1, entry.getValue());
+                    statement.setString(2, entry.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            cm.commit();
+        } catch (SQLException e) {
+            cm.rollback();
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package scheduler.store;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.Queries;
+import scheduler.model.WaitlistEntry;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JdbcWaitlistStore implements WaitlistStore {
+    @Override
+    public WaitlistEntry insert(String patientName, String vaccineName, Date from, Date to) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        long createdAt = System.currentTimeMillis();
+        try (PreparedStatement statement = con.prepareStatement(Queries.INSERT_WAITLIST_ENTRY,
+                Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, patientName);
+            statement.setString(2, vaccineName);
+            statement.setDate(3, from);
+            statement.setDate(4, to);
+            statement.setTimestamp(5, new Timestamp(createdAt));
+            statement.executeUpdate();
+            ConnectionManager.recordWrite();
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("No WaitlistID was generated");
+                }
+                return new WaitlistEntry.WaitlistEntryBuilder(generatedKeys.getInt(1), patientName, vaccineName,
+                        from, to, createdAt).build();
+            }
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public List<WaitlistEntry> getAll() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try (PreparedStatement statement = con.prepareStatement(Queries.GET_WAITLIST);
+             ResultSet resultSet = statement.executeQuery()) {
+            List<WaitlistEntry> entries = new ArrayList<>();
+            while (resultSet.next()) {
+                entries.add(new WaitlistEntry.WaitlistEntryBuilder(resultSet.getInt(1), resultSet.getString(2),
+                        resultSet.getString(3), resultSet.getDate(4), resultSet.getDate(5),
+                        resultSet.getTimestamp(6).getTime()).build());
+            }
+            return entries;
+        } catch (SQLException e) {
+            throw new SQLException();
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public boolean remove(int waitlistID) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        try {
+            return remove(waitlistID, con);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // On the caller's connection, so reserveWaitlisted can remove the entry inside its transaction
+    static boolean remove(int waitlistID, Connection con) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(Queries.DELETE_WAITLIST_ENTRY)) {
+            statement.setInt(1, waitlistID);
+            boolean removed = statement.executeUpdate() == 1;
+            ConnectionManager.recordWrite();
+            return removed;
+        } catch (SQLException e) {
+            throw new SQLException();
+        }
+    }
+}
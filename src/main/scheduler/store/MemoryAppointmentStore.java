@@ -0,0 +1,216 @@
+package scheduler.store;
+
+import scheduler.assignment.CaregiverAssignmentStrategy;
+import scheduler.model.Appointment;
+import scheduler.model.AppointmentFilter;
+import scheduler.model.WaitlistEntry;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Appointments held in memory. Ids are handed out densely from 1, so the table is an array of fixed-size
+ * chunks indexed by id: a lookup is two array reads. Per-patient and per-caregiver skip lists keyed by id serve
+ * the newest-first pages, and a per-date index serves caregiver bookings.
+ *
+ * reserve claims the caregiver by removing it from the availability set and the dose with a compare-and-set,
+ * so concurrent reservations never share a slot or oversell; a claimed caregiver is put back if no dose is left.
+ */
+public class MemoryAppointmentStore implements AppointmentStore {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final MemoryAvailabilityStore availabilities;
+    private final MemoryVaccineStore vaccines;
+    private final MemoryWaitlistStore waitlist;
+    private final AtomicInteger lastID = new AtomicInteger();
+    private volatile AtomicReferenceArray<Appointment>[] chunks = newChunks(1, null);
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Appointment>> byPatient =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Appointment>> byCaregiver =
+            new ConcurrentHashMap<>();
+    // date -> caregiver -> appointment, a caregiver has at most one appointment per day
+    private final ConcurrentSkipListMap<LocalDate, ConcurrentHashMap<String, Appointment>> byDate =
+            new ConcurrentSkipListMap<>();
+
+    public MemoryAppointmentStore(MemoryAvailabilityStore availabilities, MemoryVaccineStore vaccines,
+                                  MemoryWaitlistStore waitlist) {
+        this.availabilities = availabilities;
+        this.vaccines = vaccines;
+        this.waitlist = waitlist;
+    }
+
+    @Override
+    public Appointment reserve(String patientName, Date date, String vaccineName,
+                               CaregiverAssignmentStrategy strategy) {
+        String desiredCaregiver = null;
+        for (String caregiver : strategy.order(date, availabilities.liveCaregivers(date))) {
+            if (availabilities.claim(date, caregiver)) {
+                desiredCaregiver = caregiver;
+                break;
+            }
+        }
+        if (desiredCaregiver == null) {
+            throw new IllegalArgumentException(NO_CAREGIVER);
+        }
+        if (!vaccines.removeDoses(vaccineName, 1)) {
+            availabilities.restore(date, desiredCaregiver);
+            throw new IllegalArgumentException(NO_DOSES);
+        }
+
+        Appointment appointment = new Appointment.AppointmentBuilder(lastID.incrementAndGet(), desiredCaregiver,
+                patientName, date, vaccineName).build();
+        byPatient.computeIfAbsent(patientName, p -> new ConcurrentSkipListMap<>())
+                .put(appointment.getAppointmentID(), appointment);
+        byCaregiver.computeIfAbsent(desiredCaregiver, c -> new ConcurrentSkipListMap<>())
+                .put(appointment.getAppointmentID(), appointment);
+        byDate.computeIfAbsent(date.toLocalDate(), d -> new ConcurrentHashMap<>()).put(desiredCaregiver, appointment);
+        // published last, so a cancel that finds it also finds it in every index
+        slots(appointment.getAppointmentID()).set(offset(appointment.getAppointmentID()), appointment);
+        return appointment;
+    }
+
+    // Waitlisted entries are only ever booked by the one Waitlist matcher thread, so checking before and removing
+    // after the reserve can't book an entry twice
+    @Override
+    public Appointment reserveWaitlisted(WaitlistEntry entry, Date date, CaregiverAssignmentStrategy strategy) {
+        if (!waitlist.contains(entry.getWaitlistID())) {
+            throw new IllegalArgumentException(NOT_WAITING);
+        }
+        Appointment appointment = reserve(entry.getPatientName(), date, entry.getVaccineName(), strategy);
+        waitlist.remove(entry.getWaitlistID());
+        return appointment;
+    }
+
+    @Override
+    public List<Appointment> cancel(Role ownerRole, String owner, List<Integer> appointmentIDs) {
+        List<Appointment> cancelled = new ArrayList<>();
+        for (int appointmentID : appointmentIDs) {
+            AtomicReferenceArray<Appointment> slots = existingSlots(appointmentID);
+            Appointment appointment = slots == null ? null : slots.get(offset(appointmentID));
+            if (appointment == null || !owner.equals(ownerRole == Role.PATIENT ? appointment.getPatientName() :
+                    appointment.getCaregiverName())) {
+                continue;
+            }
+            // only one caller gets the appointment back out of its slot
+            if (!slots.compareAndSet(offset(appointmentID), appointment, null)) {
+                continue;
+            }
+            byPatient.get(appointment.getPatientName()).remove(appointmentID);
+            byCaregiver.get(appointment.getCaregiverName()).remove(appointmentID);
+            byDate.get(appointment.getTime().toLocalDate()).remove(appointment.getCaregiverName(), appointment);
+            availabilities.restore(appointment.getTime(), appointment.getCaregiverName());
+            vaccines.addDoses(appointment.getVaccineName(), 1);
+            cancelled.add(appointment);
+        }
+        return cancelled;
+    }
+
+    @Override
+    public Appointment get(int appointmentID) {
+        AtomicReferenceArray<Appointment> slots = existingSlots(appointmentID);
+        return slots == null ? null : slots.get(offset(appointmentID));
+    }
+
+    @Override
+    public int getID(String caregiverName, Date date) {
+        ConcurrentHashMap<String, Appointment> day = byDate.get(date.toLocalDate());
+        Appointment appointment = day == null ? null : day.get(caregiverName);
+        return appointment == null ? -1 : appointment.getAppointmentID();
+    }
+
+    @Override
+    public void forEachOfPatient(String patientName, AppointmentFilter filter, Consumer<Appointment> consumer) {
+        forEach(byPatient.get(patientName), filter, consumer);
+    }
+
+    @Override
+    public void forEachOfCaregiver(String caregiverName, AppointmentFilter filter, Consumer<Appointment> consumer) {
+        forEach(byCaregiver.get(caregiverName), filter, consumer);
+    }
+
+    private static void forEach(ConcurrentSkipListMap<Integer, Appointment> appointments, AppointmentFilter filter,
+                                Consumer<Appointment> consumer) {
+        if (appointments == null) {
+            return;
+        }
+        NavigableMap<Integer, Appointment> page = filter.getAfter() == null ? appointments.descendingMap() :
+                appointments.headMap(filter.getAfter(), false).descendingMap();
+        int rows = 0;
+        for (Appointment appointment : page.values()) {
+            if (rows == filter.getLimit()) {
+                return;
+            }
+            Date time = appointment.getTime();
+            if ((filter.getFrom() != null && time.before(filter.getFrom())) ||
+                    (filter.getTo() != null && time.after(filter.getTo()))) {
+                continue;
+            }
+            consumer.accept(appointment);
+            rows++;
+        }
+    }
+
+    @Override
+    public Map<String, Integer> countByCaregiver(Date start, Date end) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (ConcurrentHashMap<String, Appointment> day :
+                byDate.subMap(start.toLocalDate(), true, end.toLocalDate(), false).values()) {
+            for (String caregiver : day.keySet()) {
+                counts.merge(caregiver, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static int offset(int appointmentID) {
+        return appointmentID & (CHUNK_SIZE - 1);
+    }
+
+    private AtomicReferenceArray<Appointment> existingSlots(int appointmentID) {
+        AtomicReferenceArray<Appointment>[] current = chunks;
+        int chunk = appointmentID >>> CHUNK_BITS;
+        return appointmentID <= 0 || chunk >= current.length ? null : current[chunk];
+    }
+
+    // The chunk for a new id, growing the table if it is the first id of a chunk nobody has reached yet
+    private AtomicReferenceArray<Appointment> slots(int appointmentID) {
+        AtomicReferenceArray<Appointment> slots = existingSlots(appointmentID);
+        if (slots != null) {
+            return slots;
+        }
+        synchronized (this) {
+            int chunk = appointmentID >>> CHUNK_BITS;
+            AtomicReferenceArray<Appointment>[] current = chunks;
+            if (chunk >= current.length) {
+                current = newChunks(Math.max(chunk + 1, current.length * 2), current);
+                chunks = current;
+            }
+            return current[chunk];
+        }
+    }
+
+    // Every chunk is allocated before the array is published, readers never see an empty slot in it
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AtomicReferenceArray<Appointment>[] newChunks(int count, AtomicReferenceArray<Appointment>[] old) {
+        AtomicReferenceArray<Appointment>[] grown = new AtomicReferenceArray[count];
+        int kept = old == null ? 0 : old.length;
+        if (old != null) {
+            System.arraycopy(old, 0, grown, 0, kept);
+        }
+        for (int i = kept; i < count; i++) {
+            grown[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,144 @@
+package scheduler.store;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Availabilities as date -> caregivers, both sorted, so range scans walk the skip list instead of every row.
+ * A caregiver is claimed by adding it to its date's booked set and then removing it from the available set; the
+ * booked set admits exactly one caller, and a caregiver in it is never offered again until restore().
+ */
+public class MemoryAvailabilityStore implements AvailabilityStore {
+    private final ConcurrentSkipListMap<LocalDate, ConcurrentSkipListSet<String>> byDate =
+            new ConcurrentSkipListMap<>();
+    // date -> caregivers with an appointment, or being claimed, that day
+    private final ConcurrentHashMap<LocalDate, Set<String>> booked = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(Date date, String caregiver) throws SQLException {
+        if (isBooked(date.toLocalDate(), caregiver)) {
+            throw new SQLException(caregiver + " is booked on " + date);
+        }
+        if (!caregivers(date.toLocalDate()).add(caregiver)) {
+            throw new SQLException(caregiver + " is already available on " + date);
+        }
+        // booked between the check and the add; fail like the jdbc store's insert that finds the appointment
+        if (dropIfBooked(date.toLocalDate(), caregiver)) {
+            throw new SQLException(caregiver + " is booked on " + date);
+        }
+    }
+
+    // Each date is added on its own; a date is only ever skipped, never half added
+    @Override
+    public List<Date> addAll(String caregiver, List<Date> dates) {
+        List<Date> added = new ArrayList<>();
+        for (Date d : dates) {
+            if (!isBooked(d.toLocalDate(), caregiver) && caregivers(d.toLocalDate()).add(caregiver)
+                    && !dropIfBooked(d.toLocalDate(), caregiver)) {
+                added.add(d);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public NavigableSet<String> getCaregivers(Date date) {
+        ConcurrentSkipListSet<String> caregivers = byDate.get(date.toLocalDate());
+        return caregivers == null ? Collections.emptyNavigableSet() : new TreeSet<>(caregivers);
+    }
+
+    @Override
+    public Map<LocalDate, NavigableSet<String>> getAll() {
+        Map<LocalDate, NavigableSet<String>> all = new HashMap<>();
+        byDate.forEach((day, caregivers) -> {
+            if (!caregivers.isEmpty()) {
+                all.put(day, new TreeSet<>(caregivers));
+            }
+        });
+        return all;
+    }
+
+    @Override
+    public void forEachCountByDate(Date from, Date to, BiConsumer<Date, Integer> consumer) {
+        byDate.subMap(from.toLocalDate(), true, to.toLocalDate(), true).forEach((day, caregivers) -> {
+            int size = caregivers.size();
+            if (size > 0) {
+                consumer.accept(Date.valueOf(day), size);
+            }
+        });
+    }
+
+    @Override
+    public Map.Entry<Date, Integer> nextAvailable(Date from) {
+        for (Map.Entry<LocalDate, ConcurrentSkipListSet<String>> entry :
+                byDate.tailMap(from.toLocalDate(), true).entrySet()) {
+            int size = entry.getValue().size();
+            if (size > 0) {
+                return new AbstractMap.SimpleImmutableEntry<>(Date.valueOf(entry.getKey()), size);
+            }
+        }
+        return null;
+    }
+
+    // The live set for the date, for reserve to order its candidates
+    NavigableSet<String> liveCaregivers(Date date) {
+        ConcurrentSkipListSet<String> caregivers = byDate.get(date.toLocalDate());
+        return caregivers == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(caregivers);
+    }
+
+    // Returns true for the one caller that took the caregiver's slot
+    boolean claim(Date date, String caregiver) {
+        ConcurrentSkipListSet<String> caregivers = byDate.get(date.toLocalDate());
+        if (caregivers == null || !bookedOn(date.toLocalDate()).add(caregiver)) {
+            return false;
+        }
+        if (caregivers.remove(caregiver)) {
+            return true;
+        }
+        bookedOn(date.toLocalDate()).remove(caregiver);
+        return false;
+    }
+
+    // Gives a claimed slot back, after a failed reservation or a cancellation
+    void restore(Date date, String caregiver) {
+        bookedOn(date.toLocalDate()).remove(caregiver);
+        caregivers(date.toLocalDate()).add(caregiver);
+    }
+
+    private boolean isBooked(LocalDate day, String caregiver) {
+        Set<String> caregivers = booked.get(day);
+        return caregivers != null && caregivers.contains(caregiver);
+    }
+
+    // An upload that raced a claim takes its slot back out; claim() refuses a booked caregiver either way
+    private boolean dropIfBooked(LocalDate day, String caregiver) {
+        if (isBooked(day, caregiver)) {
+            caregivers(day).remove(caregiver);
+            return true;
+        }
+        return false;
+    }
+
+    private Set<String> bookedOn(LocalDate day) {
+        return booked.computeIfAbsent(day, d -> ConcurrentHashMap.newKeySet());
+    }
+
+    // Empty sets are kept, so a set never disappears under a concurrent add
+    private ConcurrentSkipListSet<String> caregivers(LocalDate day) {
+        return byDate.computeIfAbsent(day, d -> new ConcurrentSkipListSet<>());
+    }
+}
@@ -0,0 +1,33 @@
+package scheduler.store;
+
+import scheduler.model.Caregiver;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class MemoryCaregiverStore implements CaregiverStore {
+    private final ConcurrentHashMap<String, Caregiver> caregivers = new ConcurrentHashMap<>();
+
+    @Override
+    public void insert(Caregiver caregiver) throws SQLException {
+        if (caregivers.putIfAbsent(caregiver.getUsername(), caregiver) != null) {
+            throw new SQLException("Caregiver " + caregiver.getUsername() + " already exists");
+        }
+    }
+
+    @Override
+    public Caregiver get(String username) {
+        return caregivers.get(username);
+    }
+
+    @Override
+    public boolean exists(String username) {
+        return caregivers.containsKey(username);
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> consumer) {
+        caregivers.keySet().forEach(consumer);
+    }
+}
@@ -0,0 +1,33 @@
+package scheduler.store;
+
+import scheduler.model.Patient;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class MemoryPatientStore implements PatientStore {
+    private final ConcurrentHashMap<String, Patient> patients = new ConcurrentHashMap<>();
+
+    @Override
+    public void insert(Patient patient) throws SQLException {
+        if (patients.putIfAbsent(patient.getUsername(), patient) != null) {
+            throw new SQLException("Patient " + patient.getUsername() + " already exists");
+        }
+    }
+
+    @Override
+    public Patient get(String username) {
+        return patients.get(username);
+    }
+
+    @Override
+    public boolean exists(String username) {
+        return patients.containsKey(username);
+    }
+
+    @Override
+    public void forEachUsername(Consumer<String> consumer) {
+        patients.keySet().forEach(consumer);
+    }
+}
@@ -0,0 +1,63 @@
+package scheduler.store;
+
+import scheduler.model.Vaccine;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MemoryVaccineStore implements VaccineStore {
+    private final ConcurrentHashMap<String, AtomicInteger> doses = new ConcurrentHashMap<>();
+
+    @Override
+    public void insert(Vaccine vaccine) throws SQLException {
+        if (doses.putIfAbsent(vaccine.getVaccineName(), new AtomicInteger(vaccine.getAvailableDoses())) != null) {
+            throw new SQLException("Vaccine " + vaccine.getVaccineName() + " already exists");
+        }
+    }
+
+    @Override
+    public Vaccine get(String vaccineName) throws SQLException {
+        AtomicInteger count = doses.get(vaccineName);
+        return count == null ? null : new Vaccine.VaccineBuilder(vaccineName, count.get()).build();
+    }
+
+    @Override
+    public Map<String, Integer> getAll() {
+        Map<String, Integer> all = new TreeMap<>();
+        doses.forEach((name, count) -> all.put(name, count.get()));
+        return all;
+    }
+
+    // Like the UPDATE, unknown vaccines are ignored
+    @Override
+    public void addDoses(String vaccineName, int num) {
+        AtomicInteger count = doses.get(vaccineName);
+        if (count != null) {
+            count.addAndGet(num);
+        }
+    }
+
+    @Override
+    public boolean removeDoses(String vaccineName, int num) {
+        AtomicInteger count = doses.get(vaccineName);
+        if (count == null) {
+            return false;
+        }
+        int current;
+        do {
+            current = count.get();
+            if (current < num) {
+                return false;
+            }
+        } while (!count.compareAndSet(current, current - num));
+        return true;
+    }
+
+    @Override
+    public void applyDeltas(Map<String, Integer> deltas) {
+        deltas.forEach(this::addDoses);
+    }
+}
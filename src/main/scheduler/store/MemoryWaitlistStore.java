@@ -0,0 +1,36 @@
+package scheduler.store;
+
+import scheduler.model.WaitlistEntry;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MemoryWaitlistStore implements WaitlistStore {
+    private final AtomicInteger lastID = new AtomicInteger();
+    private final ConcurrentSkipListMap<Integer, WaitlistEntry> entries = new ConcurrentSkipListMap<>();
+
+    @Override
+    public WaitlistEntry insert(String patientName, String vaccineName, Date from, Date to) {
+        WaitlistEntry entry = new WaitlistEntry.WaitlistEntryBuilder(lastID.incrementAndGet(), patientName,
+                vaccineName, from, to, System.currentTimeMillis()).build();
+        entries.put(entry.getWaitlistID(), entry);
+        return entry;
+    }
+
+    @Override
+    public List<WaitlistEntry> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+
+    @Override
+    public boolean remove(int waitlistID) {
+        return entries.remove(waitlistID) != null;
+    }
+
+    boolean contains(int waitlistID) {
+        return entries.containsKey(waitlistID);
+    }
+}
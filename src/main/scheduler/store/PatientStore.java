@@ -0,0 +1,22 @@
+package scheduler.store;
+
+import scheduler.model.Patient;
+
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Patient accounts by username. Stores.patients() returns the one chosen at startup.
+ */
+public interface PatientStore {
+    // Throws SQLException if the username is taken
+    void insert(Patient patient) throws SQLException;
+
+    // Returns the stored salt and hash without checking any password, or null if there is no such patient
+    Patient get(String username) throws SQLException;
+
+    boolean exists(String username) throws SQLException;
+
+    // Streams every username, for building the UsernameIndex
+    void forEachUsername(Consumer<String> consumer) throws SQLException;
+}
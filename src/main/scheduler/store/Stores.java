@@ -0,0 +1,99 @@
+package scheduler.store;
+
+/**
+ * Holds the stores every model class and command goes through, chosen at startup from StorageBackend:
+ * jdbc (default) keeps everything in SQL Server through ConnectionManager, memory keeps everything in this
+ * process and needs no database at all.
+ */
+public final class Stores {
+    public enum Backend {
+        JDBC,
+        MEMORY
+    }
+
+    private static volatile Backend backend;
+    private static volatile PatientStore patients;
+    private static volatile CaregiverStore caregivers;
+    private static volatile AvailabilityStore availabilities;
+    private static volatile VaccineStore vaccines;
+    private static volatile AppointmentStore appointments;
+    private static volatile WaitlistStore waitlist;
+
+    static {
+        use(fromName(System.getenv("StorageBackend")));
+    }
+
+    private Stores() {
+    }
+
+    // Switches every store to a fresh instance of the backend; memory stores start out empty
+    public static synchronized void use(Backend newBackend) {
+        if (newBackend == Backend.MEMORY) {
+            MemoryAvailabilityStore memoryAvailabilities = new MemoryAvailabilityStore();
+            MemoryVaccineStore memoryVaccines = new MemoryVaccineStore();
+            MemoryWaitlistStore memoryWaitlist = new MemoryWaitlistStore();
+            patients = new MemoryPatientStore();
+            caregivers = new MemoryCaregiverStore();
+            availabilities = memoryAvailabilities;
+            vaccines = memoryVaccines;
+            appointments = new MemoryAppointmentStore(memoryAvailabilities, memoryVaccines, memoryWaitlist);
+            waitlist = memoryWaitlist;
+        } else {
+            patients = new JdbcPatientStore();
+            caregivers = new JdbcCaregiverStore();
+            availabilities = new JdbcAvailabilityStore();
+            vaccines = new JdbcVaccineStore();
+            appointments = new JdbcAppointmentStore();
+            waitlist = new JdbcWaitlistStore();
+        }
+        backend = newBackend;
+    }
+
+    // null picks the default
+    public static Backend fromName(String name) {
+        if (name == null) {
+            return Backend.JDBC;
+        }
+        switch (name.trim().toLowerCase()) {
+            case "jdbc":
+                return Backend.JDBC;
+            case "memory":
+                return Backend.MEMORY;
+            default:
+                throw new IllegalArgumentException("Unknown storage backend " + name);
+        }
+    }
+
+    // Getters
+    public static Backend getBackend() {
+        return backend;
+    }
+
+    public static boolean isJdbc() {
+        return backend == Backend.JDBC;
+    }
+
+    public static PatientStore patients() {
+        return patients;
+    }
+
+    public static CaregiverStore caregivers() {
+        return caregivers;
+    }
+
+    public static AvailabilityStore availabilities() {
+        return availabilities;
+    }
+
+    public static VaccineStore vaccines() {
+        return vaccines;
+    }
+
+    public static AppointmentStore appointments() {
+        return appointments;
+    }
+
+    public static WaitlistStore waitlist() {
+        return waitlist;
+    }
+}
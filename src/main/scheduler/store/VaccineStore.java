@@ -0,0 +1,29 @@
+package scheduler.store;
+
+import scheduler.model.Vaccine;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Dose counts per vaccine. The VaccineInventory caches them and, in write-behind mode, batches changes
+ * through applyDeltas.
+ */
+public interface VaccineStore {
+    // Throws SQLException if the vaccine exists
+    void insert(Vaccine vaccine) throws SQLException;
+
+    // Returns null if the vaccine is unknown
+    Vaccine get(String vaccineName) throws SQLException;
+
+    // All vaccines with their doses, sorted by name
+    Map<String, Integer> getAll() throws SQLException;
+
+    void addDoses(String vaccineName, int num) throws SQLException;
+
+    // Takes num doses if that many are left, never goes below zero. Returns false if there weren't enough.
+    boolean removeDoses(String vaccineName, int num) throws SQLException;
+
+    // Adds every delta (which may be negative) in one atomic batch
+    void applyDeltas(Map<String, Integer> deltas) throws SQLException;
+}
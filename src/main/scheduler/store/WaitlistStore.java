@@ -0,0 +1,22 @@
+package scheduler.store;
+
+import scheduler.model.WaitlistEntry;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Patients waiting for a slot, kept so the waitlist survives a restart. Entries are removed by
+ * AppointmentStore.reserveWaitlisted in the transaction that books them.
+ */
+public interface WaitlistStore {
+    // Returns the stored entry with its WaitlistID, which orders entries by arrival
+    WaitlistEntry insert(String patientName, String vaccineName, Date from, Date to) throws SQLException;
+
+    // Every waiting entry, oldest first
+    List<WaitlistEntry> getAll() throws SQLException;
+
+    // Returns false if the entry was not waiting (any more)
+    boolean remove(int waitlistID) throws SQLException;
+}
@@ -0,0 +1,179 @@
+package scheduler.util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Password hashing shared by account creation and login.
+ *
+ * Hashes are versioned so the cost can be raised without breaking existing accounts. Version 1 is the original
+ * format (PBKDF2WithHmacSHA1, 10 iterations, 2 bytes, no prefix). Every later version is stored as one version
+ * byte followed by 15 bytes of PBKDF2 output, which fills the BINARY(16) Hash column. New hashes use the version
+ * from HashVersion; HashSchemes=<version>:<algorithm>:<iterations>[,...] registers additional versions.
+ *
+ * SecretKeyFactory lookups are cached per thread and salts come from one shared SecureRandom. Hashing can be
+ * pushed onto a small bounded pool so a burst of logins can't occupy every request thread.
+ */
+public class HashingService {
+    private static final int SALT_LENGTH = 16;
+    private static final int STORED_LENGTH = 16;
+    private static final HashingService INSTANCE = new HashingService();
+
+    private final Map<Integer, Scheme> schemes = new HashMap<>();
+    private final int currentVersion;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Map<String, SecretKeyFactory>> factories = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadPoolExecutor executor;
+
+    private HashingService() {
+        schemes.put(1, new Scheme(1, "PBKDF2WithHmacSHA1", 10, 16));
+        schemes.put(2, new Scheme(2, "PBKDF2WithHmacSHA256", 10_000, (STORED_LENGTH - 1) * 8));
+        String extraSchemes = System.getenv("HashSchemes");
+        if (extraSchemes != null) {
+            for (String entry : extraSchemes.split(",")) {
+                String[] parts = entry.trim().split(":");
+                int version = Integer.parseInt(parts[0]);
+                if (version < 2 || version > 127) {
+                    throw new IllegalArgumentException("Hash versions must be between 2 and 127: " + entry);
+                }
+                schemes.put(version, new Scheme(version, parts[1], Integer.parseInt(parts[2]),
+                        (STORED_LENGTH - 1) * 8));
+            }
+        }
+        String version = System.getenv("HashVersion");
+        this.currentVersion = version == null ? 1 : Integer.parseInt(version.trim());
+        if (!schemes.containsKey(currentVersion)) {
+            throw new IllegalArgumentException("Unknown hash version " + currentVersion);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        // when the queue is full the requesting thread hashes itself instead of failing the login
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 64), r -> {
+            Thread t = new Thread(r, "password-hashing-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public static HashingService getInstance() {
+        return INSTANCE;
+    }
+
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public byte[] generateSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    // Hashes with the current version. The password array is cleared before returning.
+    public byte[] hash(char[] password, byte[] salt) {
+        return hash(schemes.get(currentVersion), password, salt);
+    }
+
+    // Checks a password against a stored (trimmed) hash of any known version. The password array is cleared.
+    public boolean verify(char[] password, byte[] salt, byte[] storedHash) {
+        Scheme scheme = schemeOf(storedHash);
+        if (scheme == null) {
+            Arrays.fill(password, '\0');
+            return false;
+        }
+        // the Hash column pads with zeros and readers trim them, so compare the trimmed forms
+        return Arrays.equals(Util.trim(storedHash), Util.trim(hash(scheme, password, salt)));
+    }
+
+    public CompletableFuture<byte[]> hashAsync(char[] password, byte[] salt) {
+        return CompletableFuture.supplyAsync(() -> hash(password, salt), executor);
+    }
+
+    public CompletableFuture<Boolean> verifyAsync(char[] password, byte[] salt, byte[] storedHash) {
+        return CompletableFuture.supplyAsync(() -> verify(password, salt, storedHash), executor);
+    }
+
+    // Verifies on the hashing pool and waits for the result
+    public boolean verifyOffThread(char[] password, byte[] salt, byte[] storedHash) {
+        try {
+            return verifyAsync(password, salt, storedHash).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // True if the stored hash was made with an older version than the current one
+    public boolean needsRehash(byte[] storedHash) {
+        Scheme scheme = schemeOf(storedHash);
+        return scheme == null || scheme.version != currentVersion;
+    }
+
+    private Scheme schemeOf(byte[] storedHash) {
+        byte[] trimmed = Util.trim(storedHash);
+        // version 1 hashes are 2 bytes without a prefix
+        if (trimmed.length <= 2) {
+            return schemes.get(1);
+        }
+        return schemes.get((int) trimmed[0]);
+    }
+
+    private byte[] hash(Scheme scheme, char[] password, byte[] salt) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, scheme.iterations, scheme.keyLengthBits);
+        Arrays.fill(password, '\0');
+        try {
+            byte[] derived = factory(scheme.algorithm).generateSecret(spec).getEncoded();
+            if (scheme.version == 1) {
+                return derived;
+            }
+            byte[] stored = new byte[derived.length + 1];
+            stored[0] = (byte) scheme.version;
+            System.arraycopy(derived, 0, stored, 1, derived.length);
+            return stored;
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
+            throw new IllegalStateException();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private SecretKeyFactory factory(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, SecretKeyFactory> cache = factories.get();
+        SecretKeyFactory factory = cache.get(algorithm);
+        if (factory == null) {
+            factory = SecretKeyFactory.getInstance(algorithm);
+            cache.put(algorithm, factory);
+        }
+        return factory;
+    }
+
+    private static class Scheme {
+        private final int version;
+        private final String algorithm;
+        private final int iterations;
+        private final int keyLengthBits;
+
+        private Scheme(int version, String algorithm, int iterations, int keyLengthBits) {
+            this.version = version;
+            this.algorithm = algorithm;
+            this.iterations = iterations;
+            this.keyLengthBits = keyLengthBits;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package scheduler.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HMAC-signed, expiring session tokens that let a returning user resume a login without a database lookup
+ * or password hashing.
+ *
+ * A token is base64url(payload) + "." + base64url(HMAC-SHA256(payload)), where the payload holds the account
+ * type, a random token id, the expiry time and the username. The signing key comes from SessionTokenKey
+ * (base64) so tokens survive restarts and work across servers; without it a random key is generated and
+ * tokens only last as long as the process. Revoked token ids are remembered until the token would have
+ * expired anyway, and a background thread drops the expired ones once a minute.
+ *
+ * Revocations are only known to the process that handled the logout: with a shared SessionTokenKey a token
+ * logged out on one server is still accepted by the others until it expires. That is why tokens are
+ * short-lived (SessionTokenTtlSeconds, default one hour).
+ */
+public class SessionTokenService {
+    public static final char PATIENT = 'P';
+    public static final char CAREGIVER = 'C';
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final SessionTokenService INSTANCE = new SessionTokenService();
+    private static final long PRUNE_SECONDS = 60;
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> macs;
+    // token id -> expiry (epoch seconds)
+    private final ConcurrentHashMap<Long, Long> revoked = new ConcurrentHashMap<>();
+    // started by the first revoke
+    private ScheduledExecutorService pruner = null;
+
+    private SessionTokenService() {
+        String configuredKey = System.getenv("SessionTokenKey");
+        byte[] keyBytes;
+        if (configuredKey != null) {
+            keyBytes = Base64.getDecoder().decode(configuredKey.trim());
+        } else {
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        String ttl = System.getenv("SessionTokenTtlSeconds");
+        this.ttlSeconds = ttl == null ? 3600 : Long.parseLong(ttl.trim());
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    public static SessionTokenService getInstance() {
+        return INSTANCE;
+    }
+
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    public String issue(char type, String username) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 8 + name.length);
+        payload.put((byte) type);
+        payload.putLong(random.nextLong());
+        payload.putLong(now() + ttlSeconds);
+        payload.put(name);
+        byte[] bytes = payload.array();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(bytes) + "." + encoder.encodeToString(macs.get().doFinal(bytes));
+    }
+
+    // Returns the verified token, or null if it is malformed, forged, expired or revoked
+    public Token verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length < 18 || !MessageDigest.isEqual(signature, macs.get().doFinal(payload))) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        char type = (char) buffer.get();
+        long id = buffer.getLong();
+        long expiresAt = buffer.getLong();
+        if (expiresAt <= now() || revoked.containsKey(id)) {
+            return null;
+        }
+        String username = new String(payload, 17, payload.length - 17, StandardCharsets.UTF_8);
+        return new Token(type, id, expiresAt, username);
+    }
+
+    public void revoke(String token) {
+        Token verified = verify(token);
+        if (verified == null) {
+            return;
+        }
+        revoked.put(verified.id, verified.expiresAt);
+        startPruner();
+    }
+
+    private synchronized void startPruner() {
+        if (pruner != null) {
+            return;
+        }
+        pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-token-pruner");
+            t.setDaemon(true);
+            return t;
+        });
+        pruner.scheduleWithFixedDelay(this::prune, PRUNE_SECONDS, PRUNE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Expired tokens fail verification anyway, so their ids don't need to be remembered
+    private void prune() {
+        long now = now();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    public static class Token {
+        private final char type;
+        private final long id;
+        private final long expiresAt;
+        private final String username;
+
+        private Token(char type, long id, long expiresAt, String username) {
+            this.type = type;
+            this.id = id;
+            this.expiresAt = expiresAt;
+            this.username = username;
+        }
+
+        // Getters
+        public char getType() {
+            return type;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+}
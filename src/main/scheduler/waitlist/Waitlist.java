@@ -0,0 +1,484 @@
+package scheduler.waitlist;
+
+import scheduler.assignment.AssignmentStrategies;
+import scheduler.assignment.CaregiverAssignmentStrategy;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.metrics.LatencyHistogram;
+import scheduler.model.Appointment;
+import scheduler.model.Patient;
+import scheduler.model.WaitlistEntry;
+import scheduler.store.AppointmentStore;
+import scheduler.store.Stores;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Patients waiting for a caregiver and a dose, booked automatically once both are there.
+ *
+ * Every vaccine has one FIFO queue per date; a patient waiting for a range of dates sits in the queue of each of
+ * them and is booked on the earliest date that frees up. Uploads, added doses and cancellations mark dates or
+ * vaccines dirty, and a single matcher thread drains the dirty queues into appointments, at most BATCH_SIZE per
+ * pass so a large upload doesn't hold the matcher on one queue.
+ *
+ * The entries live in the WaitlistStore. An entry is removed in the transaction that books it, so it is booked at
+ * most once even if another process matches it too; that process's new entries are only picked up at startup.
+ * If they can't be read then, the matcher runs anyway and keeps reading them every RETRY_MILLIS until it works.
+ */
+public class Waitlist {
+    private static final Waitlist INSTANCE = new Waitlist();
+
+    private enum Outcome {BOOKED, NOT_WAITING, NO_CAREGIVER, NO_DOSES}
+
+    // the longest range a patient can wait for, which bounds the queues an entry is added to
+    public static final int MAX_RANGE_DAYS = 90;
+    private static final int BATCH_SIZE = intEnv("WaitlistBatchSize", 100);
+    private static final long RETRY_MILLIS = 1000;
+
+    // vaccine -> date -> entries waiting for that date, oldest first
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<LocalDate, ConcurrentLinkedQueue<WaitlistEntry>>>
+            queues = new ConcurrentHashMap<>();
+    // WaitlistID -> entries not booked yet; queues skip entries that are no longer in here
+    private final ConcurrentHashMap<Integer, WaitlistEntry> waiting = new ConcurrentHashMap<>();
+    // patient and vaccine of every waiting entry, a patient waits once per vaccine
+    private final Set<String> waitingKeys = ConcurrentHashMap.newKeySet();
+    private final Set<LocalDate> dirtyDates = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyVaccines = ConcurrentHashMap.newKeySet();
+
+    private final LatencyHistogram timeToBook = new LatencyHistogram();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder booked = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private final Object lock = new Object();
+    private boolean signaled = false;
+    private boolean closed = false;
+    private Thread matcher = null;
+    // false until the stored entries have been read once
+    private volatile boolean loaded = false;
+    private LocalDate expiredUntil = null;
+
+    private Waitlist() {
+    }
+
+    public static Waitlist getInstance() {
+        return INSTANCE;
+    }
+
+    // Getters
+    public int getDepth() {
+        return waiting.size();
+    }
+
+    // date/vaccine queues that still hold entries, booked ones included until the matcher skips them
+    public int getQueueCount() {
+        int count = 0;
+        for (ConcurrentSkipListMap<LocalDate, ConcurrentLinkedQueue<WaitlistEntry>> byDate : queues.values()) {
+            count += byDate.size();
+        }
+        return count;
+    }
+
+    public long getJoined() {
+        return joined.sum();
+    }
+
+    public long getBooked() {
+        return booked.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getPasses() {
+        return passes.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    // from joining the waitlist to the appointment, in nanoseconds
+    public LatencyHistogram getTimeToBook() {
+        return timeToBook;
+    }
+
+    // Starts the matcher and loads the stored entries, after which the matcher tries every queue once. If the load
+    // fails the matcher is running all the same and retries it.
+    public void load() throws SQLException {
+        start();
+        loadStored();
+    }
+
+    private synchronized void loadStored() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        List<WaitlistEntry> stored = Stores.waitlist().getAll();
+        LocalDate today = LocalDate.now();
+        for (WaitlistEntry entry : stored) {
+            if (entry.getTo().toLocalDate().isBefore(today)) {
+                expire(entry);
+            } else {
+                enqueue(entry);
+            }
+        }
+        loaded = true;
+        signalAll();
+    }
+
+    // Adds the patient to the queues of every date from from to to. Throws IllegalArgumentException if the patient
+    // is already waiting for the vaccine or the range is not in the future.
+    public WaitlistEntry join(String patientName, String vaccineName, Date from, Date to) throws SQLException {
+        LocalDate today = LocalDate.now();
+        if (to.before(from) || to.toLocalDate().isBefore(today)) {
+            throw new IllegalArgumentException("Please enter a valid date range!");
+        }
+        if (from.toLocalDate().plusDays(MAX_RANGE_DAYS).isBefore(to.toLocalDate())) {
+            throw new IllegalArgumentException("Please wait for at most " + MAX_RANGE_DAYS + " days at a time!");
+        }
+        if (!waitingKeys.add(key(patientName, vaccineName))) {
+            throw new IllegalArgumentException("Already on the waitlist for " + vaccineName);
+        }
+        WaitlistEntry entry;
+        try {
+            entry = Stores.waitlist().insert(patientName, vaccineName, from, to);
+        } catch (SQLException e) {
+            waitingKeys.remove(key(patientName, vaccineName));
+            throw e;
+        }
+        enqueue(entry);
+        joined.increment();
+        // there may be room already, e.g. a caregiver the patient's search didn't see yet
+        dirtyVaccines.add(vaccineName);
+        signal();
+        return entry;
+    }
+
+    // Called after caregivers became available on the date
+    public void capacityAdded(Date date) {
+        capacityAdded(List.of(date));
+    }
+
+    // One signal for all the dates, so the matcher sees them in a single pass
+    public void capacityAdded(List<Date> dates) {
+        for (Date date : dates) {
+            dirtyDates.add(date.toLocalDate());
+        }
+        if (!dates.isEmpty()) {
+            signal();
+        }
+    }
+
+    // Called after doses of the vaccine were added
+    public void dosesAdded(String vaccineName) {
+        if (dirtyVaccines.add(vaccineName)) {
+            signal();
+        }
+    }
+
+    // Called after an appointment was cancelled, which gives back both its caregiver slot and its dose
+    public void released(Date date, String vaccineName) {
+        dirtyDates.add(date.toLocalDate());
+        dirtyVaccines.add(vaccineName);
+        signal();
+    }
+
+    // Retries every queue, e.g. after caches were reloaded from the store
+    public void signalAll() {
+        dirtyVaccines.addAll(queues.keySet());
+        signal();
+    }
+
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    // Does nothing if the entry is queued already, e.g. joined while the stored entries were being loaded
+    private void enqueue(WaitlistEntry entry) {
+        if (waiting.putIfAbsent(entry.getWaitlistID(), entry) != null) {
+            return;
+        }
+        waitingKeys.add(key(entry.getPatientName(), entry.getVaccineName()));
+        ConcurrentSkipListMap<LocalDate, ConcurrentLinkedQueue<WaitlistEntry>> byDate =
+                queues.computeIfAbsent(entry.getVaccineName(), v -> new ConcurrentSkipListMap<>());
+        LocalDate first = entry.getFrom().toLocalDate();
+        if (first.isBefore(LocalDate.now())) {
+            first = LocalDate.now();
+        }
+        for (LocalDate day = first; !day.isAfter(entry.getTo().toLocalDate()); day = day.plusDays(1)) {
+            byDate.computeIfAbsent(day, d -> new ConcurrentLinkedQueue<>()).add(entry);
+        }
+    }
+
+    // The entry is done waiting; its copies in the other dates' queues are skipped later
+    private void forget(WaitlistEntry entry) {
+        if (waiting.remove(entry.getWaitlistID()) != null) {
+            waitingKeys.remove(key(entry.getPatientName(), entry.getVaccineName()));
+        }
+    }
+
+    private void expire(WaitlistEntry entry) throws SQLException {
+        Stores.waitlist().remove(entry.getWaitlistID());
+        forget(entry);
+        expired.increment();
+    }
+
+    private synchronized void start() {
+        if (matcher != null) {
+            return;
+        }
+        matcher = new Thread(this::run, "waitlist-matcher");
+        matcher.setDaemon(true);
+        matcher.start();
+    }
+
+    private void signal() {
+        synchronized (lock) {
+            signaled = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!loaded) {
+                try {
+                    loadStored();
+                } catch (SQLException e) {
+                    failures.increment();
+                    awaitClose(RETRY_MILLIS);
+                    if (isClosed()) {
+                        return;
+                    }
+                }
+            }
+            while (awaitSignal()) {
+                passes.increment();
+                try {
+                    if (!match()) {
+                        // the batch is used up, leave the rest for the next pass
+                        signal();
+                    }
+                } catch (SQLException e) {
+                    // the dirty marks were put back, try again once the database is reachable
+                    failures.increment();
+                    awaitClose(RETRY_MILLIS);
+                    signal();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns false once the waitlist is closed
+    private boolean awaitSignal() throws InterruptedException {
+        synchronized (lock) {
+            while (!signaled && !closed) {
+                lock.wait();
+            }
+            signaled = false;
+            return !closed;
+        }
+    }
+
+    private boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    private void awaitClose(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (lock) {
+            long left;
+            while (!closed && (left = deadline - System.currentTimeMillis()) > 0) {
+                lock.wait(left);
+            }
+        }
+    }
+
+    // One pass over the dirty dates and vaccines, earliest date first. On each date the oldest waiter of any
+    // vaccine goes first. Returns false if the batch ran out before every queue was drained; the dirty marks are
+    // then put back.
+    private boolean match() throws SQLException {
+        Set<LocalDate> dates = takeAll(dirtyDates);
+        Set<String> vaccines = takeAll(dirtyVaccines);
+        try {
+            dropPastDates();
+            TreeMap<LocalDate, Set<String>> work = new TreeMap<>();
+            for (Map.Entry<String, ConcurrentSkipListMap<LocalDate, ConcurrentLinkedQueue<WaitlistEntry>>> byVaccine :
+                    queues.entrySet()) {
+                for (LocalDate day : byVaccine.getValue().keySet()) {
+                    if (vaccines.contains(byVaccine.getKey()) || dates.contains(day)) {
+                        work.computeIfAbsent(day, d -> new HashSet<>()).add(byVaccine.getKey());
+                    }
+                }
+            }
+
+            CaregiverAssignmentStrategy strategy = AssignmentStrategies.get();
+            Set<String> outOfDoses = new HashSet<>();
+            int budget = BATCH_SIZE;
+            for (Map.Entry<LocalDate, Set<String>> day : work.entrySet()) {
+                Date date = Date.valueOf(day.getKey());
+                Set<String> candidates = day.getValue();
+                candidates.removeAll(outOfDoses);
+                // the caches are checked first so a queue with nothing to book costs no round trip
+                while (!candidates.isEmpty() && !AvailabilityIndex.getInstance().getCaregivers(date).isEmpty()) {
+                    if (budget == 0) {
+                        dirtyDates.addAll(dates);
+                        dirtyVaccines.addAll(vaccines);
+                        return false;
+                    }
+                    WaitlistEntry entry = oldestHead(candidates, day.getKey());
+                    if (entry == null) {
+                        break;
+                    }
+                    if (VaccineInventory.getInstance().getDoses(entry.getVaccineName()) <= 0) {
+                        outOfDoses.add(entry.getVaccineName());
+                        candidates.remove(entry.getVaccineName());
+                        continue;
+                    }
+                    Outcome outcome = book(entry, date, strategy);
+                    if (outcome == Outcome.BOOKED) {
+                        budget--;
+                    } else if (outcome == Outcome.NO_DOSES) {
+                        outOfDoses.add(entry.getVaccineName());
+                        candidates.remove(entry.getVaccineName());
+                    } else if (outcome == Outcome.NO_CAREGIVER) {
+                        break;
+                    }
+                }
+            }
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            dirtyDates.addAll(dates);
+            dirtyVaccines.addAll(vaccines);
+            throw e;
+        }
+    }
+
+    // The entry that has waited longest at the head of the vaccines' queues for the date. Drops booked entries
+    // from the heads and vaccines whose queue is empty from candidates.
+    private WaitlistEntry oldestHead(Set<String> candidates, LocalDate day) {
+        WaitlistEntry oldest = null;
+        for (Iterator<String> vaccineNames = candidates.iterator(); vaccineNames.hasNext(); ) {
+            WaitlistEntry head = head(vaccineNames.next(), day);
+            if (head == null) {
+                vaccineNames.remove();
+            } else if (oldest == null || head.getWaitlistID() < oldest.getWaitlistID()) {
+                oldest = head;
+            }
+        }
+        return oldest;
+    }
+
+    private WaitlistEntry head(String vaccineName, LocalDate day) {
+        ConcurrentSkipListMap<LocalDate, ConcurrentLinkedQueue<WaitlistEntry>> byDate = queues.get(vaccineName);
+        ConcurrentLinkedQueue<WaitlistEntry> queue = byDate == null ? null : byDate.get(day);
+        if (queue == null) {
+            return null;
+        }
+        while (true) {
+            WaitlistEntry entry = queue.peek();
+            if (entry == null) {
+                byDate.remove(day, queue);
+                // an entry enqueued meanwhile went into the queue just removed, match it on the next pass
+                if (!queue.isEmpty()) {
+                    byDate.putIfAbsent(day, queue);
+                }
+                return null;
+            }
+            if (waiting.containsKey(entry.getWaitlistID())) {
+                return entry;
+            }
+            // booked on another date
+            queue.poll();
+        }
+    }
+
+    private Outcome book(WaitlistEntry entry, Date date, CaregiverAssignmentStrategy strategy) throws SQLException {
+        Appointment appointment;
+        try {
+            appointment = Stores.appointments().reserveWaitlisted(entry, date, strategy);
+        } catch (IllegalArgumentException e) {
+            if (AppointmentStore.NOT_WAITING.equals(e.getMessage())) {
+                // booked or removed by another process
+                forget(entry);
+                return Outcome.NOT_WAITING;
+            }
+            return AppointmentStore.NO_DOSES.equals(e.getMessage()) ? Outcome.NO_DOSES : Outcome.NO_CAREGIVER;
+        }
+        forget(entry);
+        Patient.reserved(appointment, strategy);
+        timeToBook.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - entry.getCreatedAt()));
+        booked.increment();
+        return Outcome.BOOKED;
+    }
+
+    // Once a day, drops the queues of dates that have passed and the entries with nothing left to wait for
+    private void dropPastDates() throws SQLException {
+        LocalDate today = LocalDate.now();
+        if (today.equals(expiredUntil)) {
+            return;
+        }
+        for (ConcurrentSkipListMap<LocalDate, ConcurrentLinkedQueue<WaitlistEntry>> byDate : queues.values()) {
+            byDate.headMap(today).clear();
+        }
+        List<WaitlistEntry> past = new ArrayList<>();
+        for (WaitlistEntry entry : waiting.values()) {
+            if (entry.getTo().toLocalDate().isBefore(today)) {
+                past.add(entry);
+            }
+        }
+        for (WaitlistEntry entry : past) {
+            expire(entry);
+        }
+        expiredUntil = today;
+    }
+
+    private static <T> Set<T> takeAll(Set<T> dirty) {
+        Set<T> taken = new HashSet<>();
+        for (T item : dirty) {
+            if (dirty.remove(item)) {
+                taken.add(item);
+            }
+        }
+        return taken;
+    }
+
+    private static String key(String patientName, String vaccineName) {
+        return patientName + '\n' + vaccineName;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        try {
+            return value == null ? defaultValue : Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+}